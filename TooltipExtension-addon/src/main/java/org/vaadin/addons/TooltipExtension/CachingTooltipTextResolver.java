@@ -0,0 +1,287 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code CachingTooltipTextResolver} caches the texts of another
+ * {@link TooltipTextResolver} by message key and locale. The cache is bounded
+ * in size, evicting the least recently used text when full, and entries can
+ * expire after a time to live. The resolver is thread-safe and meant to be
+ * created once and shared by all sessions of the application.
+ * <pre>
+ *      static final CachingTooltipTextResolver TEXTS =
+ *              new CachingTooltipTextResolver(bundleResolver, 10000, 0);
+ *      ...
+ *      builder.setTextResolver(TEXTS).createTooltipForKey(field, "name.help");
+ * </pre>
+ *
+ * Large caches are split into up to 16 segments by key, each with its own
+ * lock and evicting its own least recently used text, so that sessions
+ * resolving different texts do not wait for each other. A text missing from
+ * the cache is resolved once, concurrent callers asking for the same text
+ * wait for that result.
+ * <p>
+ * The cached texts are not serialized, a deserialized resolver starts with an
+ * empty cache.
+ */
+public class CachingTooltipTextResolver implements TooltipTextResolver {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    private static final class CacheKey {
+        private final String key;
+        private final Locale locale;
+
+        CacheKey(String key, Locale locale) {
+            this.key = key;
+            this.locale = locale;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (key == null ? 0 : key.hashCode())
+                    + (locale == null ? 0 : locale.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return (key == null ? other.key == null : key.equals(other.key))
+                    && (locale == null ? other.locale == null
+                            : locale.equals(other.locale));
+        }
+    }
+
+    private static final class CacheEntry {
+        private final String text;
+        private final long expiresAt;
+
+        CacheEntry(String text, long expiresAt) {
+            this.text = text;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Part of the cache guarded by its own lock, evicting its least recently
+     * used text when full
+     */
+    private final class Segment extends LinkedHashMap<CacheKey, CacheEntry> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<CacheKey, CacheEntry> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final TooltipTextResolver resolver;
+    private final int maxSize;
+    private final long timeToLiveMs;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private transient Segment[] segments;
+    private transient ConcurrentMap<CacheKey, FutureTask<String>> inFlight;
+
+    /**
+     * Creates a cache for the texts of resolver
+     *
+     * @param resolver
+     *            TooltipTextResolver resolving the texts not in the cache
+     * @param maxSize
+     *            int maximum number of cached texts
+     * @param timeToLiveMs
+     *            long time in milliseconds a text stays in the cache, zero or
+     *            less for no expiry
+     */
+    public CachingTooltipTextResolver(TooltipTextResolver resolver,
+            int maxSize, long timeToLiveMs) {
+        if (resolver == null) {
+            throw new IllegalArgumentException("resolver must not be null");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.resolver = resolver;
+        this.maxSize = maxSize;
+        this.timeToLiveMs = timeToLiveMs;
+        createCache();
+    }
+
+    private void createCache() {
+        int count = Math.max(1,
+                Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // Spreads the remainder so that the capacities add up to maxSize
+            segments[i] = new Segment(maxSize / count
+                    + (i < maxSize % count ? 1 : 0));
+        }
+        inFlight = new ConcurrentHashMap<>();
+    }
+
+    private Segment getSegment(CacheKey cacheKey) {
+        int h = cacheKey.hashCode();
+        h ^= h >>> 16;
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    @Override
+    public String resolveTooltipText(final String key, final Locale locale) {
+        CacheKey cacheKey = new CacheKey(key, locale);
+        Segment segment = getSegment(cacheKey);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            CacheEntry entry = segment.get(cacheKey);
+            if (entry != null && (timeToLiveMs <= 0 || entry.expiresAt > now)) {
+                hits.incrementAndGet();
+                return entry.text;
+            }
+        }
+        FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+
+            @Override
+            public String call() {
+                String text = resolver.resolveTooltipText(key, locale);
+                return text == null ? "" : text;
+            }
+        });
+        FutureTask<String> running = inFlight.putIfAbsent(cacheKey, task);
+        if (running != null) {
+            // Another caller is resolving the same text
+            hits.incrementAndGet();
+            return getResult(running);
+        }
+        misses.incrementAndGet();
+        try {
+            // Resolved outside the segment lock so that slow lookups do not
+            // block hits
+            task.run();
+            String text = getResult(task);
+            synchronized (segment) {
+                segment.put(cacheKey, new CacheEntry(text, now + timeToLiveMs));
+            }
+            return text;
+        } finally {
+            inFlight.remove(cacheKey, task);
+        }
+    }
+
+    /**
+     * Waits for the task without giving up on interrupts, as the text is
+     * needed either way, and rethrows what the resolver threw
+     */
+    private static String getResult(FutureTask<String> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Removes all texts from the cache. Statistics are not reset.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of texts currently in the cache, including expired
+     * texts not yet replaced
+     *
+     * @return int
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of texts served from the cache, including texts
+     * another caller was resolving at the same time
+     *
+     * @return long
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of texts resolved by the underlying resolver because
+     * they were not in the cache or had expired
+     *
+     * @return long
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of texts evicted to keep the cache within its maximum
+     * size
+     *
+     * @return long
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        createCache();
+    }
+}
@@ -0,0 +1,317 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.vaadin.addons.TooltipExtension.client.ContainerTooltipExtensionClientRpc;
+import org.vaadin.addons.TooltipExtension.client.ContainerTooltipExtensionState;
+import org.vaadin.addons.TooltipExtension.client.TooltipSpecState;
+
+import com.vaadin.server.AbstractClientConnector;
+import com.vaadin.server.AbstractExtension;
+import com.vaadin.server.Extension;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.ComponentContainer;
+import com.vaadin.ui.HasComponents.ComponentAttachEvent;
+import com.vaadin.ui.HasComponents.ComponentAttachListener;
+import com.vaadin.ui.HasComponents.ComponentDetachEvent;
+import com.vaadin.ui.HasComponents.ComponentDetachListener;
+
+//@formatter:off
+/**
+ * Tooltips for the child components of a container held by one extension of
+ * the container, instead of one {@link TooltipExtension} per child. The state
+ * holds each distinct {@link TooltipSpec} once and maps the connector ids of
+ * the children to them, so a form with hundreds of fields adds a single
+ * connector. The tooltips are shown in the shared overlay of the UI.
+ * Changing the tooltip of a child, or adding or removing a child with a
+ * tooltip, sends only the tooltips of the changed children to the client.
+ * <pre>
+ *      FormLayout form = new FormLayout(name, email);
+ *      ContainerTooltipExtension tooltips = ContainerTooltipExtension.get(form);
+ *      tooltips.setTooltip(name, TooltipSpec.of("Full name", TooltipPosition.RIGHT, 250, 250));
+ * </pre>
+ */
+//@formatter:on
+public class ContainerTooltipExtension extends AbstractExtension {
+
+    /*
+     * Unused specs the client may hold before the tooltips are rewritten
+     * through the state
+     */
+    static final int MAX_UNUSED_SPECS = 16;
+
+    private Map<Component, TooltipSpec> tooltips = new HashMap<>();
+    /*
+     * Indexes of the specs the client has, and the spec index of each child
+     * tooltip on the client
+     */
+    private Map<TooltipSpec, Integer> specIndexes = new IdentityHashMap<>();
+    private Map<Component, Integer> sentIndexes = new HashMap<>();
+    // Children whose tooltip may differ from the one on the client
+    private Set<Component> changedChildren = new HashSet<>();
+    private boolean rewriteTooltips = false;
+
+    /**
+     * Creates the tooltip extension of the container. The container must be
+     * a connector, as all Vaadin containers are.
+     *
+     * @param container
+     *            ComponentContainer
+     */
+    protected ContainerTooltipExtension(ComponentContainer container) {
+        if (!(container instanceof AbstractClientConnector)) {
+            throw new IllegalArgumentException(
+                    "container must be an AbstractClientConnector");
+        }
+        extend((AbstractClientConnector) container);
+        container.addComponentAttachListener(new ComponentAttachListener() {
+
+            @Override
+            public void componentAttachedToContainer(
+                    ComponentAttachEvent event) {
+                if (tooltips.containsKey(event.getAttachedComponent())) {
+                    tooltipChanged(event.getAttachedComponent());
+                }
+            }
+        });
+        container.addComponentDetachListener(new ComponentDetachListener() {
+
+            @Override
+            public void componentDetachedFromContainer(
+                    ComponentDetachEvent event) {
+                removeTooltip(event.getDetachedComponent());
+            }
+        });
+    }
+
+    /**
+     * Returns the tooltip extension of the container, creating it if the
+     * container does not have one yet
+     *
+     * @param container
+     *            ComponentContainer
+     * @return ContainerTooltipExtension
+     */
+    public static ContainerTooltipExtension get(ComponentContainer container) {
+        for (Extension e : container.getExtensions()) {
+            if (e instanceof ContainerTooltipExtension) {
+                return (ContainerTooltipExtension) e;
+            }
+        }
+        return new ContainerTooltipExtension(container);
+    }
+
+    @Override
+    protected ContainerTooltipExtensionState getState() {
+        return (ContainerTooltipExtensionState) super.getState();
+    }
+
+    @Override
+    protected ContainerTooltipExtensionState getState(boolean markAsDirty) {
+        return (ContainerTooltipExtensionState) super.getState(markAsDirty);
+    }
+
+    /**
+     * Sets the tooltip of a child component of the container. If spec is
+     * null, the tooltip is removed. The tooltip may be set before the
+     * component is added to the container, it is removed when the component
+     * is removed from the container.
+     *
+     * @param child
+     *            child component
+     * @param spec
+     *            TooltipSpec or null
+     */
+    public void setTooltip(Component child, TooltipSpec spec) {
+        if (spec == null) {
+            removeTooltip(child);
+        } else if (tooltips.put(child, spec) != spec) {
+            tooltipChanged(child);
+        }
+    }
+
+    /**
+     * Returns the tooltip of the child component, or null if it has none
+     *
+     * @param child
+     *            child component
+     * @return TooltipSpec or null
+     */
+    public TooltipSpec getTooltip(Component child) {
+        return tooltips.get(child);
+    }
+
+    /**
+     * Removes the tooltip of the child component, if it has one
+     *
+     * @param child
+     *            child component
+     */
+    public void removeTooltip(Component child) {
+        if (tooltips.remove(child) != null) {
+            tooltipChanged(child);
+        }
+    }
+
+    /**
+     * Returns the delay before a tooltip of a child is shown
+     *
+     * @return int delay in milliseconds
+     */
+    public int getShowDelay() {
+        return getState(false).showDelayMs;
+    }
+
+    /**
+     * Sets the delay before a tooltip of a child is shown, negative values
+     * are treated as zero
+     *
+     * @param delayMs
+     *            int delay in milliseconds
+     */
+    public void setShowDelay(int delayMs) {
+        getState().showDelayMs = Math.max(0, delayMs);
+    }
+
+    /**
+     * Returns the delay before a tooltip of a child is hidden
+     *
+     * @return int delay in milliseconds
+     */
+    public int getHideDelay() {
+        return getState(false).hideDelayMs;
+    }
+
+    /**
+     * Sets the delay before a tooltip of a child is hidden, negative values
+     * are treated as zero
+     *
+     * @param delayMs
+     *            int delay in milliseconds
+     */
+    public void setHideDelay(int delayMs) {
+        getState().hideDelayMs = Math.max(0, delayMs);
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        // Connector ids of the children may be new in this UI
+        rewriteTooltips = true;
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+        if (rewriteTooltips || initial) {
+            writeTooltips();
+        } else if (!changedChildren.isEmpty()) {
+            sendChangedTooltips();
+        }
+    }
+
+    private void tooltipChanged(Component child) {
+        changedChildren.add(child);
+        markAsDirty();
+    }
+
+    private boolean isShown(Component child) {
+        return child.getParent() == getParent() && child.isAttached();
+    }
+
+    /**
+     * Returns the index of the spec on the client, adding the spec to
+     * newSpecs if the client does not have it yet
+     */
+    private int getSpecIndex(TooltipSpec spec,
+            List<TooltipSpecState> newSpecs) {
+        Integer index = specIndexes.get(spec);
+        if (index == null) {
+            index = specIndexes.size();
+            specIndexes.put(spec, index);
+            newSpecs.add(toState(spec));
+        }
+        return index;
+    }
+
+    /**
+     * Writes the tooltips of the current children to the state, each distinct
+     * spec once
+     */
+    private void writeTooltips() {
+        rewriteTooltips = false;
+        changedChildren.clear();
+        specIndexes.clear();
+        sentIndexes.clear();
+        List<TooltipSpecState> specs = new ArrayList<>();
+        Map<String, Integer> childTooltips = new HashMap<>();
+        for (Map.Entry<Component, TooltipSpec> entry : tooltips.entrySet()) {
+            Component child = entry.getKey();
+            if (!isShown(child)) {
+                continue;
+            }
+            int index = getSpecIndex(entry.getValue(), specs);
+            sentIndexes.put(child, index);
+            childTooltips.put(child.getConnectorId(), index);
+        }
+        ContainerTooltipExtensionState state = getState();
+        state.specs = specs;
+        state.tooltips = childTooltips;
+        // Sent even if equal to earlier state, replacing the updates
+        state.tooltipsRevision++;
+    }
+
+    /**
+     * Sends the tooltips of the changed children, and the specs the client
+     * does not have yet, without resending the state
+     */
+    private void sendChangedTooltips() {
+        int startIndex = specIndexes.size();
+        List<TooltipSpecState> newSpecs = new ArrayList<>();
+        Map<String, Integer> changed = new HashMap<>();
+        for (Component child : changedChildren) {
+            TooltipSpec spec = tooltips.get(child);
+            int index = spec != null && isShown(child)
+                    ? getSpecIndex(spec, newSpecs) : -1;
+            Integer sentIndex = sentIndexes.get(child);
+            if (sentIndex == null ? index == -1 : sentIndex == index) {
+                continue;
+            }
+            if (index == -1) {
+                sentIndexes.remove(child);
+            } else {
+                sentIndexes.put(child, index);
+            }
+            changed.put(child.getConnectorId(), index);
+        }
+        changedChildren.clear();
+        if (specIndexes.size() > 2 * sentIndexes.size() + MAX_UNUSED_SPECS) {
+            // Most specs on the client are no longer used
+            writeTooltips();
+            return;
+        }
+        ContainerTooltipExtensionClientRpc rpc = getRpcProxy(
+                ContainerTooltipExtensionClientRpc.class);
+        if (!newSpecs.isEmpty()) {
+            rpc.addSpecs(startIndex, newSpecs);
+        }
+        if (!changed.isEmpty()) {
+            rpc.updateTooltips(changed);
+        }
+    }
+
+    private static TooltipSpecState toState(TooltipSpec spec) {
+        TooltipSpecState state = new TooltipSpecState();
+        state.text = spec.getText();
+        state.position = spec.getPosition().position;
+        state.styleNames = spec.getStyleNames();
+        state.opacityTransDurationMs = spec.getOpacityTransitionDuration();
+        return state;
+    }
+}
@@ -0,0 +1,300 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder.TooltipPosition;
+import org.vaadin.addons.TooltipExtension.client.GridTooltipExtensionState;
+
+import com.vaadin.data.Item;
+import com.vaadin.ui.Grid;
+import com.vaadin.ui.Grid.AbstractGridExtension;
+import com.vaadin.ui.Grid.Column;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+
+/**
+ * Cell and row tooltips for a {@link Grid}. The tooltip texts are generated
+ * with the row data, so they are only produced for the rows the client
+ * actually fetches, and shown by one shared tooltip element on the client
+ * instead of a tooltip per cell.
+ */
+public class GridTooltipExtension extends AbstractGridExtension {
+
+    /**
+     * Generates the tooltip of a single cell
+     */
+    public interface CellTooltipGenerator extends Serializable {
+
+        /**
+         * Returns the tooltip of the cell, or null if the cell has no tooltip
+         *
+         * @param itemId
+         *            item id of the row
+         * @param item
+         *            item of the row
+         * @param propertyId
+         *            property id of the column
+         * @return tooltip HTML or null
+         */
+        String getTooltip(Object itemId, Item item, Object propertyId);
+    }
+
+    /**
+     * Generates the tooltip of a row, shown for cells without a cell tooltip
+     */
+    public interface RowTooltipGenerator extends Serializable {
+
+        /**
+         * Returns the tooltip of the row, or null if the row has no tooltip
+         *
+         * @param itemId
+         *            item id of the row
+         * @param item
+         *            item of the row
+         * @return tooltip HTML or null
+         */
+        String getTooltip(Object itemId, Item item);
+    }
+
+    private CellTooltipGenerator cellTooltipGenerator;
+    private RowTooltipGenerator rowTooltipGenerator;
+
+    /**
+     * Extends the grid with cell and row tooltips. No tooltips are shown
+     * until a generator is set.
+     *
+     * @param grid
+     *            Grid
+     */
+    public GridTooltipExtension(Grid grid) {
+        super(grid);
+    }
+
+    @Override
+    protected GridTooltipExtensionState getState() {
+        return (GridTooltipExtensionState) super.getState();
+    }
+
+    @Override
+    protected GridTooltipExtensionState getState(boolean markAsDirty) {
+        return (GridTooltipExtensionState) super.getState(markAsDirty);
+    }
+
+    @Override
+    public void generateData(Object itemId, Item item, JsonObject rowData) {
+        if (rowTooltipGenerator != null) {
+            String tooltip = rowTooltipGenerator.getTooltip(itemId, item);
+            if (tooltip != null) {
+                rowData.put(GridTooltipExtensionState.JSONKEY_ROW_TOOLTIP,
+                        tooltip);
+            }
+        }
+        if (cellTooltipGenerator != null) {
+            JsonObject cells = null;
+            for (Column column : getParentGrid().getColumns()) {
+                if (column.isHidden()) {
+                    continue;
+                }
+                Object propertyId = column.getPropertyId();
+                String tooltip = cellTooltipGenerator.getTooltip(itemId, item,
+                        propertyId);
+                if (tooltip != null) {
+                    if (cells == null) {
+                        cells = Json.createObject();
+                    }
+                    cells.put(getColumnId(propertyId), tooltip);
+                }
+            }
+            if (cells != null) {
+                rowData.put(GridTooltipExtensionState.JSONKEY_CELL_TOOLTIPS,
+                        cells);
+            }
+        }
+    }
+
+    @Override
+    public void destroyData(Object itemId) {
+        // Nothing is kept per row
+    }
+
+    /**
+     * Returns the generator of cell tooltips
+     *
+     * @return CellTooltipGenerator or null
+     */
+    public CellTooltipGenerator getCellTooltipGenerator() {
+        return cellTooltipGenerator;
+    }
+
+    /**
+     * Sets the generator of cell tooltips and regenerates the rows the client
+     * has fetched
+     *
+     * @param cellTooltipGenerator
+     *            generator or null to remove cell tooltips
+     */
+    public void setCellTooltipGenerator(
+            CellTooltipGenerator cellTooltipGenerator) {
+        this.cellTooltipGenerator = cellTooltipGenerator;
+        getParentGrid().refreshAllRows();
+    }
+
+    /**
+     * Returns the generator of row tooltips
+     *
+     * @return RowTooltipGenerator or null
+     */
+    public RowTooltipGenerator getRowTooltipGenerator() {
+        return rowTooltipGenerator;
+    }
+
+    /**
+     * Sets the generator of row tooltips and regenerates the rows the client
+     * has fetched
+     *
+     * @param rowTooltipGenerator
+     *            generator or null to remove row tooltips
+     */
+    public void setRowTooltipGenerator(RowTooltipGenerator rowTooltipGenerator) {
+        this.rowTooltipGenerator = rowTooltipGenerator;
+        getParentGrid().refreshAllRows();
+    }
+
+    /**
+     * Returns the tooltip position
+     *
+     * @return TooltipPosition
+     */
+    public TooltipPosition getTooltipPosition() {
+        return TooltipPosition.valueOf(getState(false).tooltipPositionStyle);
+    }
+
+    /**
+     * Sets the tooltip position. If null, position is set to
+     * {@link TooltipPosition#RIGHT}
+     *
+     * @param position
+     *            TooltipPosition
+     */
+    public void setTooltipPosition(TooltipPosition position) {
+        getState().tooltipPositionStyle = position == null
+                ? TooltipPosition.RIGHT.name() : position.name();
+    }
+
+    /**
+     * Returns the custom style names of the tooltips
+     *
+     * @return List<String>
+     */
+    public List<String> getTooltipStyleNames() {
+        return getState(false).tooltipStylenames;
+    }
+
+    /**
+     * Adds a custom style name to the tooltips. If the style name is null or
+     * already present, this method has no effect.
+     *
+     * @param styleName
+     *            String
+     */
+    public void addTooltipStyleName(String styleName) {
+        if (styleName != null
+                && !getState(false).tooltipStylenames.contains(styleName)) {
+            getState().tooltipStylenames.add(styleName);
+        }
+    }
+
+    /**
+     * Removes a custom style name from the tooltips
+     *
+     * @param styleName
+     *            String
+     */
+    public void removeTooltipStyleName(String styleName) {
+        if (getState(false).tooltipStylenames.contains(styleName)) {
+            getState().tooltipStylenames.remove(styleName);
+        }
+    }
+
+    /**
+     * Returns the opacity transition duration in milliseconds
+     *
+     * @return int
+     */
+    public int getOpacityTransitionDuration() {
+        return getState(false).opacityTransDurationMs;
+    }
+
+    /**
+     * Sets the opacity transition duration in milliseconds. If value provided
+     * is less than zero, duration is set to zero
+     *
+     * @param durationMs
+     *            int
+     */
+    public void setOpacityTransitionDuration(int durationMs) {
+        getState().opacityTransDurationMs = Math.max(0, durationMs);
+    }
+
+    /**
+     * Returns the delay in milliseconds before a tooltip is shown
+     *
+     * @return int
+     */
+    public int getShowDelay() {
+        return getState(false).showDelayMs;
+    }
+
+    /**
+     * Sets the delay in milliseconds before a tooltip is shown. If value
+     * provided is less than zero, delay is set to zero
+     *
+     * @param delayMs
+     *            int
+     */
+    public void setShowDelay(int delayMs) {
+        getState().showDelayMs = Math.max(0, delayMs);
+    }
+
+    /**
+     * Returns the delay in milliseconds before a tooltip is hidden
+     *
+     * @return int
+     */
+    public int getHideDelay() {
+        return getState(false).hideDelayMs;
+    }
+
+    /**
+     * Sets the delay in milliseconds before a tooltip is hidden. If value
+     * provided is less than zero, delay is set to zero
+     *
+     * @param delayMs
+     *            int
+     */
+    public void setHideDelay(int delayMs) {
+        getState().hideDelayMs = Math.max(0, delayMs);
+    }
+
+    /**
+     * Returns the name of the profile the tooltip styling is taken from
+     *
+     * @return String profile name or null
+     */
+    public String getProfile() {
+        return getState(false).profile;
+    }
+
+    /**
+     * Takes the tooltip styling from the profile of the given name in the
+     * {@link TooltipRegistry} of the UI instead of this extension
+     *
+     * @param profile
+     *            profile name or null
+     */
+    public void setProfile(String profile) {
+        getState().profile = profile;
+    }
+}
@@ -0,0 +1,128 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * Updates tooltip texts from any thread, coalescing updates of the same
+ * tooltip within a time window. Only the latest text of the window is set to
+ * the tooltip, intermediate texts are dropped, so a burst of updates causes at
+ * most one state change, and one push, per tooltip and window.
+ *
+ * <pre>
+ * ThrottledTooltipUpdater updater = new ThrottledTooltipUpdater(scheduler, 500);
+ * // in a background thread
+ * updater.update(tile, "Load: " + load);
+ * </pre>
+ */
+public class ThrottledTooltipUpdater {
+
+    private final ScheduledExecutorService scheduler;
+    private final long windowMs;
+    private final ConcurrentMap<AbstractComponent, String> pending = new ConcurrentHashMap<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+
+    /**
+     * Creates an updater that sets the latest text of each tooltip once per
+     * window
+     *
+     * @param scheduler
+     *            ScheduledExecutorService running the delayed updates
+     * @param windowMs
+     *            long length of the window in milliseconds
+     */
+    public ThrottledTooltipUpdater(ScheduledExecutorService scheduler,
+            long windowMs) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("scheduler must not be null");
+        }
+        this.scheduler = scheduler;
+        this.windowMs = windowMs < 0 ? 0 : windowMs;
+    }
+
+    /**
+     * Sets the tooltip text of the component at the end of the current
+     * window, unless a newer text is given before that. The component must
+     * have a tooltip created with {@link TooltipExtensionBuilder}, otherwise
+     * the update is ignored. May be called from any thread without holding the
+     * session lock.
+     *
+     * @param component
+     *            component with a tooltip
+     * @param tooltipText
+     *            String, if null, text is set to empty String
+     */
+    public void update(final AbstractComponent component, String tooltipText) {
+        received.incrementAndGet();
+        String text = tooltipText == null ? "" : tooltipText;
+        if (pending.put(component, text) == null) {
+            scheduler.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    apply(component);
+                }
+            }, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void apply(final AbstractComponent component) {
+        final String text = pending.remove(component);
+        UI ui = component.getUI();
+        if (text == null || ui == null) {
+            return;
+        }
+        try {
+            ui.access(new Runnable() {
+
+                @Override
+                public void run() {
+                    TooltipExtension te = TooltipExtension.get(component);
+                    if (te != null && !text.equals(te.getTooltipText())) {
+                        te.setTooltipText(text);
+                        sent.incrementAndGet();
+                    }
+                }
+            });
+        } catch (UIDetachedException e) {
+            // Component was removed, drop the update
+        }
+    }
+
+    /**
+     * Returns the number of updates given to {@link #update(AbstractComponent,
+     * String)}
+     *
+     * @return long
+     */
+    public long getUpdatesReceived() {
+        return received.get();
+    }
+
+    /**
+     * Returns the number of updates that have changed a tooltip text and so
+     * have been sent to the client
+     *
+     * @return long
+     */
+    public long getUpdatesSent() {
+        return sent.get();
+    }
+
+    /**
+     * Returns the length of the window in milliseconds
+     *
+     * @return long
+     */
+    public long getWindow() {
+        return windowMs;
+    }
+}
@@ -0,0 +1,37 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+
+/**
+ * Result of
+ * {@link TooltipExtensionBuilder#createTooltips(java.util.Collection, TooltipTextProvider)}
+ */
+public class TooltipBatchResult implements Serializable {
+
+    private final int createdCount;
+    private final int reusedCount;
+
+    public TooltipBatchResult(int createdCount, int reusedCount) {
+        this.createdCount = createdCount;
+        this.reusedCount = reusedCount;
+    }
+
+    /**
+     * Returns the number of components that got a new tooltip extension
+     *
+     * @return int
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Returns the number of components whose existing tooltip extension was
+     * updated
+     *
+     * @return int
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+}
@@ -0,0 +1,22 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.Component;
+
+/**
+ * Creates the content component of a tooltip when the tooltip is shown, see
+ * {@link TooltipExtensionBuilder#createContentTooltip(AbstractComponent, TooltipContentFactory)}
+ */
+public interface TooltipContentFactory extends Serializable {
+
+    /**
+     * Returns a new content component for the tooltip of the component
+     *
+     * @param component
+     *            target component
+     * @return Component
+     */
+    Component createContent(AbstractComponent component);
+}
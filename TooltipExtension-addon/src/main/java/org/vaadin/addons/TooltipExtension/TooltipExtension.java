@@ -1,23 +1,97 @@
 package org.vaadin.addons.TooltipExtension;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder.TooltipPosition;
 import org.vaadin.addons.TooltipExtension.client.TooltipExtensionServerRpc;
 import org.vaadin.addons.TooltipExtension.client.TooltipExtensionState;
 
 import com.vaadin.server.AbstractExtension;
+import com.vaadin.server.Extension;
 import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
 
 public class TooltipExtension extends AbstractExtension {
 
+    private TooltipTextProvider textProvider;
+    private TooltipContentFactory contentFactory;
+    private TooltipTextProvider asyncProvider;
+    private transient Executor asyncExecutor;
+    // Identifies the latest async load, results of older loads are dropped
+    private transient Object asyncLoad;
+    // String table indexes of the text and style names, see encodeState()
+    private transient int textRef = -1;
+    private transient int styleNamesRef = -1;
+    // Indexes last sent to the client, the table may be reset in between
+    private transient int sentTextRef = -1;
+    private transient int sentStyleNamesRef = -1;
+
     protected TooltipExtension() {
         registerRpc(new TooltipExtensionServerRpc() {
+
+            @Override
+            public void requestTooltipText() {
+                loadTooltipText();
+            }
+
+            @Override
+            public void contentShown(int left, int top) {
+                if (contentFactory != null) {
+                    TooltipRegistry.get(getUI()).showContent(
+                            TooltipExtension.this, contentFactory, left, top);
+                }
+            }
+
+            @Override
+            public void contentHidden() {
+                if (contentFactory != null) {
+                    TooltipRegistry.get(getUI())
+                            .hideContent(TooltipExtension.this);
+                }
+            }
         });
     }
 
+    /**
+     * Returns the tooltip extension of the component, or null if the
+     * component does not have a tooltip
+     *
+     * @param component
+     *            target component
+     * @return TooltipExtension or null
+     */
+    public static TooltipExtension get(AbstractComponent component) {
+        // Components have only a few extensions, so a scan is cheaper than
+        // any shared index, and needs no locking
+        for (Extension e : component.getExtensions()) {
+            if (e instanceof TooltipExtension) {
+                return (TooltipExtension) e;
+            }
+        }
+        return null;
+    }
+
     @Override
     protected TooltipExtensionState getState() {
         return (TooltipExtensionState) super.getState();
     }
 
+    @Override
+    protected TooltipExtensionState getState(boolean markAsDirty) {
+        return (TooltipExtensionState) super.getState(markAsDirty);
+    }
+
     public void extend(AbstractComponent component) {
         if (component.getDescription() != null) {
             component.setDescription("");
@@ -25,4 +99,414 @@ public class TooltipExtension extends AbstractExtension {
         super.extend(component);
     }
 
+    @Override
+    public void attach() {
+        super.attach();
+        if (textProvider != null) {
+            // Lazy texts in the viewport are prefetched through the registry
+            TooltipRegistry.get(getUI());
+        }
+        if (asyncProvider != null && asyncLoad == null) {
+            startAsyncLoad();
+        }
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+        TooltipRegistry registry = TooltipRegistry.get(getUI());
+        TooltipExtensionState state = getState(false);
+        textRef = registry.getStringRef(state.tooltipText);
+        styleNamesRef = registry
+                .getStringRef(joinStyleNames(state.tooltipStylenames));
+    }
+
+    /**
+     * Sends the tooltip text and style names as indexes in the string table
+     * of the {@link TooltipRegistry}, so that values shared by many tooltips
+     * are sent to the client once per UI. The indexes are also sent when
+     * only they have changed, which happens when the table is reset.
+     */
+    @Override
+    public JsonObject encodeState() {
+        JsonObject diff = super.encodeState();
+        TooltipExtensionState state = getState(false);
+        if (diff.hasKey("tooltipText") || textRef != sentTextRef) {
+            if (textRef >= 0) {
+                diff.remove("tooltipText");
+            } else {
+                diff.put("tooltipText", state.tooltipText);
+            }
+            diff.put("textRef", textRef);
+            sentTextRef = textRef;
+        }
+        if (diff.hasKey("tooltipStylenames")
+                || styleNamesRef != sentStyleNamesRef) {
+            if (styleNamesRef >= 0) {
+                diff.remove("tooltipStylenames");
+            } else {
+                JsonArray styleNames = Json.createArray();
+                for (String styleName : state.tooltipStylenames) {
+                    styleNames.set(styleNames.length(), styleName);
+                }
+                diff.put("tooltipStylenames", styleNames);
+            }
+            diff.put("styleNamesRef", styleNamesRef);
+            sentStyleNamesRef = styleNamesRef;
+        }
+        return diff;
+    }
+
+    private static String joinStyleNames(List<String> styleNames) {
+        StringBuilder joined = new StringBuilder();
+        for (String styleName : styleNames) {
+            if (joined.length() > 0) {
+                joined.append(' ');
+            }
+            joined.append(styleName);
+        }
+        return joined.toString();
+    }
+
+    @Override
+    public void detach() {
+        if (contentFactory != null) {
+            TooltipRegistry.get(getUI()).releaseContent(this);
+        }
+        super.detach();
+    }
+
+    /**
+     * Sets the factory creating the content component of the tooltip when it
+     * is shown. If null, the tooltip shows its text.
+     *
+     * @param contentFactory
+     *            TooltipContentFactory or null
+     */
+    void setContentFactory(TooltipContentFactory contentFactory) {
+        if (this.contentFactory != null && isAttached()) {
+            TooltipRegistry.get(getUI()).releaseContent(this);
+        }
+        this.contentFactory = contentFactory;
+        if (getState(false).contentTooltip != (contentFactory != null)) {
+            getState().contentTooltip = contentFactory != null;
+        }
+    }
+
+    /**
+     * Returns the tooltip text
+     *
+     * @return String
+     */
+    public String getTooltipText() {
+        return getState(false).tooltipText;
+    }
+
+    /**
+     * Sets the tooltip text. If null, text is set to empty String. Replaces a
+     * template set by {@link #setTooltipTemplate(String, Map)}.
+     *
+     * @param tooltipText
+     *            String
+     */
+    public void setTooltipText(String tooltipText) {
+        cancelAsyncLoad();
+        TooltipExtensionState state = getState();
+        state.tooltipText = tooltipText == null ? "" : tooltipText;
+        state.templateId = null;
+        state.templateParameters = null;
+    }
+
+    /**
+     * Sets the tooltip text to be expanded on the client from a template
+     * registered with {@link TooltipRegistry#registerTemplate(String, String)}.
+     * Parameter values are HTML escaped when expanded.
+     *
+     * @param templateId
+     *            String id of the template
+     * @param parameters
+     *            Map<String, String> parameter values by name, or null
+     */
+    public void setTooltipTemplate(String templateId,
+            Map<String, String> parameters) {
+        cancelAsyncLoad();
+        TooltipExtensionState state = getState();
+        state.tooltipText = "";
+        state.templateId = templateId;
+        state.templateParameters = parameters == null ? null
+                : new HashMap<>(parameters);
+    }
+
+    /**
+     * Returns the id of the template the tooltip text is expanded from, or
+     * null if the tooltip does not use a template
+     *
+     * @return String
+     */
+    public String getTooltipTemplateId() {
+        return getState(false).templateId;
+    }
+
+    /**
+     * Returns the template parameter values of the tooltip, or null
+     *
+     * @return Map<String, String> unmodifiable map of parameter values
+     */
+    public Map<String, String> getTooltipTemplateParameters() {
+        Map<String, String> parameters = getState(false).templateParameters;
+        return parameters == null ? null
+                : Collections.unmodifiableMap(parameters);
+    }
+
+    /**
+     * Returns the tooltip position
+     *
+     * @return TooltipPosition
+     */
+    public TooltipPosition getTooltipPosition() {
+        return TooltipPosition.valueOf(getState(false).tooltipPositionStyle);
+    }
+
+    /**
+     * Sets the tooltip position. If null, position is set to
+     * {@link TooltipPosition#RIGHT}
+     *
+     * @param position
+     *            TooltipPosition
+     */
+    public void setTooltipPosition(TooltipPosition position) {
+        getState().tooltipPositionStyle = position == null
+                ? TooltipPosition.RIGHT.position : position.position;
+    }
+
+    /**
+     * Returns the tooltip id, or null if not set
+     *
+     * @return String
+     */
+    public String getTooltipId() {
+        return getState(false).id;
+    }
+
+    /**
+     * Sets the tooltip id. Note that the id is NOT checked for uniqueness
+     * automatically
+     *
+     * @param id
+     *            String
+     */
+    public void setTooltipId(String id) {
+        getState().id = id;
+    }
+
+    /**
+     * Returns the position transition duration in milliseconds
+     *
+     * @return int
+     */
+    public int getPositionTransitionDuration() {
+        return getState(false).positionTransDurationMs;
+    }
+
+    /**
+     * Sets the position transition duration in milliseconds. If value provided
+     * is less than zero, duration is set to zero
+     *
+     * @param durationMs
+     *            int
+     */
+    public void setPositionTransitionDuration(int durationMs) {
+        getState().positionTransDurationMs = durationMs < 0 ? 0 : durationMs;
+    }
+
+    /**
+     * Returns the opacity transition duration in milliseconds
+     *
+     * @return int
+     */
+    public int getOpacityTransitionDuration() {
+        return getState(false).opacityTransDurationMs;
+    }
+
+    /**
+     * Sets the opacity transition duration in milliseconds. If value provided
+     * is less than zero, duration is set to zero
+     *
+     * @param durationMs
+     *            int
+     */
+    public void setOpacityTransitionDuration(int durationMs) {
+        getState().opacityTransDurationMs = durationMs < 0 ? 0 : durationMs;
+    }
+
+    /**
+     * Returns the delay in milliseconds before the tooltip is shown
+     *
+     * @return int
+     */
+    public int getShowDelay() {
+        return getState(false).showDelayMs;
+    }
+
+    /**
+     * Sets the delay in milliseconds before the tooltip is shown once the
+     * pointer rests on the component. If value provided is less than zero,
+     * delay is set to zero
+     *
+     * @param delayMs
+     *            int
+     */
+    public void setShowDelay(int delayMs) {
+        getState().showDelayMs = delayMs < 0 ? 0 : delayMs;
+    }
+
+    /**
+     * Returns the delay in milliseconds before the tooltip is hidden
+     *
+     * @return int
+     */
+    public int getHideDelay() {
+        return getState(false).hideDelayMs;
+    }
+
+    /**
+     * Sets the delay in milliseconds before the tooltip is hidden once the
+     * pointer leaves the component. If value provided is less than zero,
+     * delay is set to zero
+     *
+     * @param delayMs
+     *            int
+     */
+    public void setHideDelay(int delayMs) {
+        getState().hideDelayMs = delayMs < 0 ? 0 : delayMs;
+    }
+
+    /**
+     * Sets the provider used to load the tooltip text when the tooltip is
+     * shown for the first time. If null, the text in the state is used as is.
+     *
+     * @param textProvider
+     *            TooltipTextProvider or null
+     */
+    void setTextProvider(TooltipTextProvider textProvider) {
+        cancelAsyncLoad();
+        this.textProvider = textProvider;
+        if (textProvider != null) {
+            getState().tooltipText = "";
+        }
+        getState().lazyText = textProvider != null;
+        if (textProvider != null && isAttached()) {
+            TooltipRegistry.get(getUI());
+        }
+    }
+
+    void loadTooltipText() {
+        if (textProvider == null || !(getParent() instanceof AbstractComponent)) {
+            return;
+        }
+        String text = textProvider
+                .getTooltipText((AbstractComponent) getParent());
+        getState().tooltipText = text == null ? "" : text;
+        getState().lazyText = false;
+    }
+
+    /**
+     * Loads the tooltip text from the provider with the executor, outside of
+     * the session lock. The placeholder is shown until the text has been
+     * loaded. The text is applied with {@link UI#access(Runnable)}, so it
+     * reaches the client immediately if push is enabled, otherwise with the
+     * next request. Loading starts when the extension is attached. Without
+     * an executor the text stays pending until one is set with
+     * {@link #setAsyncExecutor(Executor)}, the provider is never called in
+     * the request thread.
+     */
+    void setAsyncTextProvider(TooltipTextProvider provider, Executor executor,
+            String placeholder) {
+        setTextProvider(null);
+        TooltipExtensionState state = getState();
+        state.tooltipText = placeholder == null ? "" : placeholder;
+        state.templateId = null;
+        state.templateParameters = null;
+        state.textPending = true;
+        asyncProvider = provider;
+        asyncExecutor = executor;
+        if (isAttached()) {
+            startAsyncLoad();
+        }
+    }
+
+    /**
+     * Sets the executor that loads the pending text of a tooltip created by
+     * {@link TooltipExtensionBuilder#createAsyncTooltip(AbstractComponent, TooltipTextProvider)}.
+     * The executor is not serialized, so a text still pending when the
+     * session was restored is only loaded once the executor has been set
+     * again. Has no effect if the text is not pending.
+     *
+     * @param executor
+     *            Executor
+     */
+    public void setAsyncExecutor(Executor executor) {
+        if (asyncProvider == null) {
+            return;
+        }
+        asyncExecutor = executor;
+        if (isAttached() && asyncLoad == null) {
+            startAsyncLoad();
+        }
+    }
+
+    private void startAsyncLoad() {
+        final Object load = new Object();
+        final UI ui = getUI();
+        final AbstractComponent component = (AbstractComponent) getParent();
+        final TooltipTextProvider provider = asyncProvider;
+        if (asyncExecutor == null) {
+            // Not serialized, the placeholder stays until it is set again
+            Logger.getLogger(TooltipExtension.class.getName()).log(
+                    Level.WARNING,
+                    "No executor to load the tooltip text with, call "
+                            + "setAsyncExecutor after the session has been "
+                            + "restored");
+            return;
+        }
+        asyncLoad = load;
+        asyncExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                String text;
+                try {
+                    text = provider.getTooltipText(component);
+                } catch (RuntimeException e) {
+                    Logger.getLogger(TooltipExtension.class.getName()).log(
+                            Level.WARNING, "Loading tooltip text failed", e);
+                    text = null;
+                }
+                final String loaded = text;
+                try {
+                    ui.access(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            if (asyncLoad == load) {
+                                setTooltipText(loaded);
+                            }
+                        }
+                    });
+                } catch (UIDetachedException e) {
+                    // UI closed while loading, nothing to update
+                }
+            }
+        });
+    }
+
+    private void cancelAsyncLoad() {
+        if (asyncProvider != null) {
+            asyncProvider = null;
+            asyncExecutor = null;
+            asyncLoad = null;
+            getState().textPending = false;
+        }
+    }
+
 }
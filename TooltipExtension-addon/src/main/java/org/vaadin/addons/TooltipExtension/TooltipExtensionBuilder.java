@@ -1,12 +1,21 @@
 package org.vaadin.addons.TooltipExtension;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+import org.vaadin.addons.TooltipExtension.client.TooltipExtensionState;
 
-import com.vaadin.server.Extension;
 import com.vaadin.ui.AbstractComponent;
 
 //@formatter:off
@@ -29,7 +38,7 @@ import com.vaadin.ui.AbstractComponent;
  * </pre>
  *
  */
-public class TooltipExtensionBuilder {
+public class TooltipExtensionBuilder implements Serializable {
   //@formatter:on
     /**
      * Specifies the side of the target component on which the tooltip will
@@ -51,7 +60,12 @@ public class TooltipExtensionBuilder {
         /**
          * Tooltip will appear centered below target component
          */
-        BOTTOM("BOTTOM");
+        BOTTOM("BOTTOM"),
+        /**
+         * Tooltip will appear on the first side of top, bottom, right and
+         * left where it fits in the browser window
+         */
+        AUTO("AUTO");
 
         protected String position;
 
@@ -60,12 +74,34 @@ public class TooltipExtensionBuilder {
         }
     }
 
-    private Set<TooltipExtension> createdExtensions = new HashSet<>();
+    private static final TooltipExtensionState DEFAULT_STATE = new TooltipExtensionState();
+
+    /*
+     * Extensions styled by the Builder properties, which Builder style name
+     * changes are applied to. Held weakly so that a long-lived Builder does
+     * not keep components that have been removed from the UI, and their
+     * extensions, reachable. Serialized as a plain array of the live
+     * extensions, see writeObject().
+     */
+    private transient Set<TooltipExtension> createdExtensions = Collections
+            .newSetFromMap(new WeakHashMap<TooltipExtension, Boolean>());
     private String tooltipText = "";
     private List<String> tooltipStylenames;
     private TooltipPosition position = TooltipPosition.RIGHT;
     private int positionTransDurationMs = 250;
     private int opacityTransDurationMs = 250;
+    private int showDelayMs = 0;
+    private int hideDelayMs = 0;
+    private boolean sharedOverlay = false;
+    private boolean lazyRendering = false;
+    private String profile;
+    /*
+     * Not serialized, as the resolver is shared by the application. Set them
+     * again after the session has been restored.
+     */
+    private transient TooltipTextResolver textResolver;
+    private transient Executor executor;
+    private String placeholderText = "";
 
     public TooltipExtensionBuilder() {
         tooltipStylenames = new ArrayList<>();
@@ -131,12 +167,222 @@ public class TooltipExtensionBuilder {
         return this;
     }
 
+    /**
+     * Sets the delay in milliseconds before a tooltip is shown. The delay
+     * restarts while the pointer keeps moving over the component, so that
+     * sweeping the pointer across a dense layout does not show, and animate,
+     * every tooltip on the way. With a delay only one tooltip is shown at a
+     * time.
+     *
+     * Defaults to 0, which shows tooltips on hover by CSS alone. If value
+     * provided is less than zero, delay is set to zero
+     *
+     * @param delayMs
+     *            int delay in milliseconds
+     * @return TooltipExtensionBuilder
+     */
+    public TooltipExtensionBuilder setShowDelay(int delayMs) {
+        showDelayMs = delayMs < 0 ? 0 : delayMs;
+        return this;
+    }
+
+    /**
+     * Returns the show delay set by {@link #setShowDelay(int)}
+     *
+     * @return int delay in milliseconds
+     */
+    public int getShowDelay() {
+        return showDelayMs;
+    }
+
+    /**
+     * Sets the delay in milliseconds before a tooltip is hidden once the
+     * pointer leaves the component
+     *
+     * Defaults to 0, if value provided is less than zero, delay is set to
+     * zero
+     *
+     * @param delayMs
+     *            int delay in milliseconds
+     * @return TooltipExtensionBuilder
+     */
+    public TooltipExtensionBuilder setHideDelay(int delayMs) {
+        hideDelayMs = delayMs < 0 ? 0 : delayMs;
+        return this;
+    }
+
+    /**
+     * Returns the hide delay set by {@link #setHideDelay(int)}
+     *
+     * @return int delay in milliseconds
+     */
+    public int getHideDelay() {
+        return hideDelayMs;
+    }
+
+    /**
+     * Sets whether tooltips are shown in a single tooltip element shared by
+     * all tooltips of the UI. In this mode no tooltip elements are created
+     * for the target component, which keeps the size of the DOM constant
+     * regardless of the number of tooltips.
+     *
+     * Defaults to false. The mode of a tooltip cannot be changed after it has
+     * been created.
+     *
+     * @param sharedOverlay
+     *            boolean
+     * @return TooltipExtensionBuilder
+     */
+    public TooltipExtensionBuilder setSharedOverlay(boolean sharedOverlay) {
+        this.sharedOverlay = sharedOverlay;
+        return this;
+    }
+
+    /**
+     * Returns true if tooltips are shown in a single tooltip element shared by
+     * all tooltips of the UI, set by {@link #setSharedOverlay(boolean)}
+     *
+     * @return boolean
+     */
+    public boolean isSharedOverlay() {
+        return sharedOverlay;
+    }
+
+    /**
+     * Sets whether the tooltip elements are created only when the target
+     * component is hovered or focused for the first time. Components that are
+     * never hovered then add no tooltip elements to the page.
+     *
+     * Defaults to false. Has no effect on tooltips shown in the shared
+     * overlay, see {@link #setSharedOverlay(boolean)}.
+     *
+     * @param lazyRendering
+     *            boolean
+     * @return TooltipExtensionBuilder
+     */
+    public TooltipExtensionBuilder setLazyRendering(boolean lazyRendering) {
+        this.lazyRendering = lazyRendering;
+        return this;
+    }
+
+    /**
+     * Returns true if tooltip elements are created on first hover or focus,
+     * set by {@link #setLazyRendering(boolean)}
+     *
+     * @return boolean
+     */
+    public boolean isLazyRendering() {
+        return lazyRendering;
+    }
+
+    /**
+     * Sets the name of the {@link TooltipProfile} styling the tooltips built
+     * after this call. The style names, position and transition durations of
+     * the profile registered in the {@link TooltipRegistry} of the UI are then
+     * used instead of the ones set to this Builder, and changing the profile
+     * does not require updating each tooltip. If null, tooltips are styled by
+     * the Builder properties.
+     *
+     * @param profile
+     *            String name of the profile or null
+     * @return TooltipExtensionBuilder
+     */
+    public TooltipExtensionBuilder setProfile(String profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * Returns the profile name set by {@link #setProfile(String)}, or null if
+     * tooltips are styled by the Builder properties
+     *
+     * @return String
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Sets the resolver used by
+     * {@link #createTooltipForKey(AbstractComponent, String)} to resolve
+     * tooltip texts by message key. The resolver is not serialized with the
+     * builder, so that a resolver shared by the application stays shared, and
+     * has to be set again after the session has been restored.
+     *
+     * @param textResolver
+     *            TooltipTextResolver or null
+     * @return TooltipExtensionBuilder
+     */
+    public TooltipExtensionBuilder setTextResolver(
+            TooltipTextResolver textResolver) {
+        this.textResolver = textResolver;
+        return this;
+    }
+
+    /**
+     * Returns the resolver set by
+     * {@link #setTextResolver(TooltipTextResolver)}
+     *
+     * @return TooltipTextResolver or null
+     */
+    public TooltipTextResolver getTextResolver() {
+        return textResolver;
+    }
+
+    /**
+     * Sets the executor used by
+     * {@link #createAsyncTooltip(AbstractComponent, TooltipTextProvider)} to
+     * load tooltip texts outside of the session lock
+     *
+     * @param executor
+     *            Executor or null
+     * @return TooltipExtensionBuilder
+     */
+    public TooltipExtensionBuilder setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Returns the executor set by {@link #setExecutor(Executor)}
+     *
+     * @return Executor or null
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the text shown by tooltips created with
+     * {@link #createAsyncTooltip(AbstractComponent, TooltipTextProvider)}
+     * until their text has been loaded. If null, text is set to empty String
+     *
+     * @param placeholderText
+     *            String
+     * @return TooltipExtensionBuilder
+     */
+    public TooltipExtensionBuilder setPlaceholderText(String placeholderText) {
+        this.placeholderText = placeholderText == null ? "" : placeholderText;
+        return this;
+    }
+
+    /**
+     * Returns the placeholder text set by {@link #setPlaceholderText(String)}
+     *
+     * @return String
+     */
+    public String getPlaceholderText() {
+        return placeholderText;
+    }
+
     /**
      * Add custom style name to Builder. If style is already present, or null or
      * empty, this method has no effect.
      *
      * Note that this method adds the style name to all components extended with
-     * this Builder.
+     * this Builder, updating each of them, except tooltips styled by a
+     * profile or a {@link TooltipSpec}. Use a {@link TooltipProfile} to style a large number of
+     * tooltips.
      *
      * @param stylename
      *            String
@@ -158,7 +404,8 @@ public class TooltipExtensionBuilder {
      * name is not present this method has no effect.
      *
      * Note that this method removes the style name from all components extended
-     * with this Builder. Cannot remove position defining styles, only user
+     * with this Builder, except tooltips styled by a profile or a
+     * {@link TooltipSpec}. Cannot remove position defining styles, only user
      * added custom style names.
      *
      * @param stylename
@@ -195,19 +442,7 @@ public class TooltipExtensionBuilder {
      *            target component
      */
     public void createTooltip(AbstractComponent component) {
-        TooltipExtension te = new TooltipExtension();
-        if (isExtended(component)) {
-            te = getExtension(component);
-        } else {
-            createdExtensions.add(te);
-        }
-        te.getState().tooltipText = tooltipText;
-        te.getState().tooltipPositionStyle = position.position;
-        te.getState().tooltipStylenames = tooltipStylenames;
-        te.getState().positionTransDurationMs = positionTransDurationMs;
-        te.getState().opacityTransDurationMs = opacityTransDurationMs;
-        te.extend(component);
-        createdExtensions.add(te);
+        configure(TooltipExtension.get(component), component, tooltipText);
     }
 
     /**
@@ -223,19 +458,194 @@ public class TooltipExtensionBuilder {
      *            String
      */
     public void createTooltip(AbstractComponent component, String tooltipText) {
-        TooltipExtension te = new TooltipExtension();
-        if (isExtended(component)) {
-            te = getExtension(component);
-        } else {
-            createdExtensions.add(te);
+        configure(TooltipExtension.get(component), component, tooltipText);
+    }
+
+    /**
+     * Builds the custom tooltip according to Builder properties, and adds it to
+     * the target component. The tooltip text is resolved by the message key
+     * in the locale of the component with the resolver set by
+     * {@link #setTextResolver(TooltipTextResolver)}.
+     *
+     * @param component
+     *            target component
+     * @param messageKey
+     *            String message key of the tooltip text
+     * @throws IllegalStateException
+     *             if no resolver has been set
+     */
+    public void createTooltipForKey(AbstractComponent component,
+            String messageKey) {
+        if (textResolver == null) {
+            throw new IllegalStateException(
+                    "No TooltipTextResolver set to the Builder");
         }
-        te.getState().tooltipText = tooltipText == null ? "" : tooltipText;
-        te.getState().tooltipStylenames = tooltipStylenames;
-        te.getState().tooltipPositionStyle = position.position;
-        te.getState().positionTransDurationMs = positionTransDurationMs;
-        te.getState().opacityTransDurationMs = opacityTransDurationMs;
-        te.extend(component);
-        createdExtensions.add(te);
+        Locale locale = component.getLocale();
+        configure(TooltipExtension.get(component), component,
+                textResolver.resolveTooltipText(messageKey,
+                        locale == null ? Locale.getDefault() : locale));
+    }
+
+    /**
+     * Builds the custom tooltip according to Builder properties, and adds it to
+     * the target component. The tooltip text is expanded on the client from
+     * the template registered with the id in the {@link TooltipRegistry} of
+     * the UI, so only the template id and the parameter values are sent with
+     * the tooltip.
+     *
+     * @param component
+     *            target component
+     * @param templateId
+     *            String id of the template
+     * @param parameters
+     *            Map<String, String> parameter values by name, or null
+     */
+    public void createTooltipFromTemplate(AbstractComponent component,
+            String templateId, Map<String, String> parameters) {
+        configure(TooltipExtension.get(component), component, "")
+                .setTooltipTemplate(templateId, parameters);
+    }
+
+    /**
+     * Builds custom tooltips according to Builder properties for all of the
+     * components in a single pass. Tooltip text for each component is
+     * provided by textProvider, if null, the Builder tooltip text is used.
+     * Components that already have a tooltip are updated.
+     *
+     * Note that the texts returned by textProvider are NOT set as the Builder
+     * default tooltip text
+     *
+     * @param components
+     *            target components
+     * @param textProvider
+     *            TooltipTextProvider for the tooltip texts or null
+     * @return TooltipBatchResult counts of created and updated tooltips
+     */
+    public TooltipBatchResult createTooltips(
+            Collection<? extends AbstractComponent> components,
+            TooltipTextProvider textProvider) {
+        int created = 0;
+        int reused = 0;
+        for (AbstractComponent component : components) {
+            TooltipExtension te = TooltipExtension.get(component);
+            if (te == null) {
+                created++;
+            } else {
+                reused++;
+            }
+            configure(te, component, textProvider == null ? tooltipText
+                    : textProvider.getTooltipText(component));
+        }
+        return new TooltipBatchResult(created, reused);
+    }
+
+    /**
+     * Builds the custom tooltip according to Builder properties, and adds it to
+     * the target component. The tooltip text is not sent to the client with
+     * the tooltip, instead it is requested from the provider when the tooltip
+     * is shown for the first time and then kept on the client. Texts of
+     * tooltips in the viewport are prefetched in one request when the browser
+     * is idle, so that most tooltips already have their text when first
+     * shown.
+     *
+     * If provider is null, this method works like
+     * {@link #createTooltip(AbstractComponent)}
+     *
+     * @param component
+     *            target component
+     * @param provider
+     *            TooltipTextProvider for the tooltip text
+     */
+    public void createLazyTooltip(AbstractComponent component,
+            TooltipTextProvider provider) {
+        TooltipExtension te = configure(TooltipExtension.get(component), component,
+                tooltipText);
+        te.setTextProvider(provider);
+    }
+
+    /**
+     * Builds the custom tooltip according to Builder properties, and adds it to
+     * the target component. The tooltip text is loaded from the provider with
+     * the executor set by {@link #setExecutor(Executor)} once the component is
+     * attached, so slow providers do not hold the session lock. The
+     * placeholder text is shown until the text has been loaded, and the text
+     * is pushed to the client if push is enabled.
+     *
+     * Note that the provider is called outside of the session lock, so it
+     * must not modify the component or read state that requires the lock.
+     * The executor is not serialized, a text still pending when the session
+     * is restored is loaded once it has been set again with
+     * {@link TooltipExtension#setAsyncExecutor(Executor)}.
+     *
+     * @param component
+     *            target component
+     * @param provider
+     *            TooltipTextProvider for the tooltip text
+     * @throws IllegalStateException
+     *             if no executor has been set
+     */
+    public void createAsyncTooltip(AbstractComponent component,
+            TooltipTextProvider provider) {
+        if (executor == null) {
+            throw new IllegalStateException("No Executor set to the Builder");
+        }
+        configure(TooltipExtension.get(component), component, placeholderText)
+                .setAsyncTextProvider(provider, executor, placeholderText);
+    }
+
+    /**
+     * Builds the custom tooltip with text, position, style names and
+     * durations of the spec and the other Builder properties, and adds it to
+     * the target component. The state of the tooltip refers to the strings
+     * and the style name list of the shared spec instead of copies, so later
+     * Builder style name changes do not apply to it.
+     *
+     * @param component
+     *            target component
+     * @param spec
+     *            TooltipSpec
+     */
+    public void createTooltip(AbstractComponent component, TooltipSpec spec) {
+        TooltipExtension te = configure(TooltipExtension.get(component),
+                component, spec.getText());
+        TooltipExtensionState state = te.getState();
+        state.tooltipStylenames = spec.getStyleNames();
+        state.tooltipPositionStyle = spec.getPosition().position;
+        state.positionTransDurationMs = spec.getPositionTransitionDuration();
+        state.opacityTransDurationMs = spec.getOpacityTransitionDuration();
+        // Builder style name changes must not replace the shared spec list
+        createdExtensions.remove(te);
+    }
+
+    /**
+     * Returns the interned {@link TooltipSpec} of the text, position, style
+     * names and durations of the Builder
+     *
+     * @return TooltipSpec
+     */
+    public TooltipSpec toSpec() {
+        return TooltipSpec.of(tooltipText, position, positionTransDurationMs,
+                opacityTransDurationMs, tooltipStylenames);
+    }
+
+    /**
+     * Builds the custom tooltip according to Builder properties, and adds it to
+     * the target component. Instead of a text, the tooltip shows a component
+     * created by the factory when the tooltip is shown for the first time.
+     * The content component is shown in a window of the UI next to the
+     * target, and is released after it has been hidden for the idle timeout
+     * of the {@link TooltipRegistry} of the UI, which also caps the number of
+     * live content components.
+     *
+     * @param component
+     *            target component
+     * @param factory
+     *            TooltipContentFactory for the content component
+     */
+    public void createContentTooltip(AbstractComponent component,
+            TooltipContentFactory factory) {
+        configure(TooltipExtension.get(component), component, "")
+                .setContentFactory(factory);
     }
 
     /**
@@ -250,20 +660,8 @@ public class TooltipExtensionBuilder {
      *            String id for the tooltip
      */
     public void createTooltipWithId(AbstractComponent component, String id) {
-        TooltipExtension te = new TooltipExtension();
-        if (isExtended(component)) {
-            te = getExtension(component);
-        } else {
-            createdExtensions.add(te);
-        }
-        te.getState().tooltipText = tooltipText == null ? "" : tooltipText;
-        te.getState().tooltipStylenames = tooltipStylenames;
-        te.getState().tooltipPositionStyle = position.position;
-        te.getState().positionTransDurationMs = positionTransDurationMs;
-        te.getState().opacityTransDurationMs = opacityTransDurationMs;
-        te.getState().id = id;
-        te.extend(component);
-        createdExtensions.add(te);
+        configure(TooltipExtension.get(component), component, tooltipText)
+                .setTooltipId(id);
     }
 
     /**
@@ -283,40 +681,53 @@ public class TooltipExtensionBuilder {
      */
     public void createTooltipWithId(AbstractComponent component, String id,
             String tooltipText) {
-        TooltipExtension te = new TooltipExtension();
-        if (isExtended(component)) {
-            te = getExtension(component);
-        } else {
-            createdExtensions.add(te);
-        }
-        te.getState().tooltipText = tooltipText == null ? "" : tooltipText;
-        te.getState().tooltipStylenames = tooltipStylenames;
-        te.getState().tooltipPositionStyle = position.position;
-        te.getState().positionTransDurationMs = positionTransDurationMs;
-        te.getState().opacityTransDurationMs = opacityTransDurationMs;
-        te.getState().id = id;
-
-        te.extend(component);
+        configure(TooltipExtension.get(component), component, tooltipText)
+                .setTooltipId(id);
     }
 
-    private boolean isExtended(AbstractComponent component) {
-        Collection<Extension> c = component.getExtensions();
-        for (Extension e : c) {
-            if (e instanceof TooltipExtension) {
-                return true;
-            }
+    /**
+     * Applies Builder properties and the tooltip text to the extension, or to
+     * a new extension if null, and extends the component with it
+     */
+    private TooltipExtension configure(TooltipExtension te,
+            AbstractComponent component, String tooltipText) {
+        if (te == null) {
+            te = new TooltipExtension();
         }
-        return false;
-    }
-
-    private TooltipExtension getExtension(AbstractComponent component) {
-        Collection<Extension> c = component.getExtensions();
-        for (Extension e : c) {
-            if (e instanceof TooltipExtension) {
-                return (TooltipExtension) e;
-            }
+        te.setTextProvider(null);
+        te.setContentFactory(null);
+        TooltipExtensionState state = te.getState();
+        state.tooltipText = tooltipText == null ? "" : tooltipText;
+        state.templateId = null;
+        state.templateParameters = null;
+        if (profile == null) {
+            state.tooltipStylenames = tooltipStylenames;
+            state.tooltipPositionStyle = position.position;
+            state.positionTransDurationMs = positionTransDurationMs;
+            state.opacityTransDurationMs = opacityTransDurationMs;
+        } else {
+            // Styled by the profile, the state only carries its name
+            state.tooltipStylenames = new ArrayList<>();
+            state.tooltipPositionStyle = DEFAULT_STATE.tooltipPositionStyle;
+            state.positionTransDurationMs = DEFAULT_STATE.positionTransDurationMs;
+            state.opacityTransDurationMs = DEFAULT_STATE.opacityTransDurationMs;
+        }
+        state.showDelayMs = showDelayMs;
+        state.hideDelayMs = hideDelayMs;
+        state.sharedOverlay = sharedOverlay;
+        state.lazyRendering = lazyRendering;
+        state.profile = profile;
+        if (te.getParent() == null) {
+            te.extend(component);
         }
-        return null;
+        // Builder style name changes are only fanned out to the tooltips
+        // styled by the Builder
+        if (profile == null) {
+            createdExtensions.add(te);
+        } else {
+            createdExtensions.remove(te);
+        }
+        return te;
     }
 
     /**
@@ -329,6 +740,15 @@ public class TooltipExtensionBuilder {
         return positionTransDurationMs;
     }
 
+    /**
+     * Returns the number of live tooltip extensions created with this Builder
+     * and styled by its properties, so not those with a profile or a
+     * {@link TooltipSpec}. Extensions
+     * of components that are no longer referenced by the
+     * application are not counted once they have been garbage collected.
+     *
+     * @return int number of live extensions
+     */
     public int getSize() {
         return createdExtensions.size();
     }
@@ -375,25 +795,8 @@ public class TooltipExtensionBuilder {
      * @return TooltipPosition
      */
     public TooltipPosition getTooltipPositionFor(AbstractComponent component) {
-        TooltipPosition p = null;
-        Collection<Extension> extensions = component.getExtensions();
-        for (Extension e : extensions) {
-            if (e instanceof TooltipExtension) {
-                if (((TooltipExtension) e).getState().tooltipPositionStyle
-                        .equals("TOP")) {
-                    p = TooltipPosition.TOP;
-                } else if (((TooltipExtension) e)
-                        .getState().tooltipPositionStyle.equals("BOTTOM")) {
-                    p = TooltipPosition.BOTTOM;
-                } else if (((TooltipExtension) e)
-                        .getState().tooltipPositionStyle.equals("LEFT")) {
-                    p = TooltipPosition.LEFT;
-                } else {
-                    p = TooltipPosition.RIGHT;
-                }
-            }
-        }
-        return p;
+        TooltipExtension te = TooltipExtension.get(component);
+        return te == null ? null : te.getTooltipPosition();
     }
 
     /**
@@ -409,14 +812,8 @@ public class TooltipExtensionBuilder {
      * @return int
      */
     public int getOpacityTransitionFor(AbstractComponent component) {
-        int i = -1;
-        Collection<Extension> extensions = component.getExtensions();
-        for (Extension e : extensions) {
-            if (e instanceof TooltipExtension) {
-                i = ((TooltipExtension) e).getState().opacityTransDurationMs;
-            }
-        }
-        return i;
+        TooltipExtension te = TooltipExtension.get(component);
+        return te == null ? -1 : te.getOpacityTransitionDuration();
     }
 
     /**
@@ -428,14 +825,8 @@ public class TooltipExtensionBuilder {
      * @return String
      */
     public String getTooltipIdFor(AbstractComponent component) {
-        String id = null;
-        Collection<Extension> extensions = component.getExtensions();
-        for (Extension e : extensions) {
-            if (e instanceof TooltipExtension) {
-                id = ((TooltipExtension) e).getState().id;
-            }
-        }
-        return id;
+        TooltipExtension te = TooltipExtension.get(component);
+        return te == null ? null : te.getTooltipId();
     }
 
     /**
@@ -451,14 +842,8 @@ public class TooltipExtensionBuilder {
      * @return int
      */
     public int getPositionTransitionFor(AbstractComponent component) {
-        int i = -1;
-        Collection<Extension> extensions = component.getExtensions();
-        for (Extension e : extensions) {
-            if (e instanceof TooltipExtension) {
-                i = ((TooltipExtension) e).getState().positionTransDurationMs;
-            }
-        }
-        return i;
+        TooltipExtension te = TooltipExtension.get(component);
+        return te == null ? -1 : te.getPositionTransitionDuration();
     }
 
     /**
@@ -473,13 +858,28 @@ public class TooltipExtensionBuilder {
      * @return String
      */
     public String getTooltipTextFor(AbstractComponent component) {
-        String text = null;
-        Collection<Extension> extensions = component.getExtensions();
-        for (Extension e : extensions) {
-            if (e instanceof TooltipExtension) {
-                text = ((TooltipExtension) e).getState().tooltipText;
-            }
+        TooltipExtension te = TooltipExtension.get(component);
+        return te == null ? null : te.getTooltipText();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        TooltipExtension[] extensions = createdExtensions
+                .toArray(new TooltipExtension[createdExtensions.size()]);
+        out.writeInt(extensions.length);
+        for (TooltipExtension te : extensions) {
+            out.writeObject(te);
+        }
+    }
+
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        createdExtensions = Collections
+                .newSetFromMap(new WeakHashMap<TooltipExtension, Boolean>());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            createdExtensions.add((TooltipExtension) in.readObject());
         }
-        return text;
     }
 }
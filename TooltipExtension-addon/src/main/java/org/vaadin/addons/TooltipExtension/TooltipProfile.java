@@ -0,0 +1,157 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder.TooltipPosition;
+import org.vaadin.addons.TooltipExtension.client.TooltipProfileState;
+
+/**
+ * {@code TooltipProfile} is a named set of tooltip style names, position and
+ * transition durations registered once per UI in {@link TooltipRegistry}.
+ * Tooltips referring to the profile are styled by it, so changing the profile
+ * updates all of them at the cost of a single state change.
+ * <pre>
+ *      TooltipRegistry.get(ui).getProfile("required")
+ *              .setPosition(TooltipPosition.BOTTOM)
+ *              .addStyleName("requiredTooltip");
+ *      new TooltipExtensionBuilder().setProfile("required")
+ *              .createTooltip(field, "Required field");
+ * </pre>
+ */
+public class TooltipProfile implements Serializable {
+
+    private final TooltipRegistry registry;
+    private final String name;
+
+    TooltipProfile(TooltipRegistry registry, String name) {
+        this.registry = registry;
+        this.name = name;
+    }
+
+    /**
+     * Returns the state of the profile in the registry
+     *
+     * @throws IllegalStateException
+     *             if the profile has been removed from the registry
+     */
+    private TooltipProfileState getState(boolean markAsDirty) {
+        TooltipProfileState state = registry.getProfileState(name,
+                markAsDirty);
+        if (state == null) {
+            throw new IllegalStateException(
+                    "Tooltip profile " + name + " has been removed");
+        }
+        return state;
+    }
+
+    /**
+     * Returns the name tooltips use to refer to this profile
+     *
+     * @return String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets position of tooltips using this profile. If null, position is set
+     * to {@link TooltipPosition#RIGHT}
+     *
+     * @param position
+     *            {@link TooltipPosition}
+     * @return TooltipProfile
+     */
+    public TooltipProfile setPosition(TooltipPosition position) {
+        getState(true).position = position == null
+                ? TooltipPosition.RIGHT.position : position.position;
+        return this;
+    }
+
+    /**
+     * Returns position of tooltips using this profile
+     *
+     * @return TooltipPosition
+     */
+    public TooltipPosition getPosition() {
+        return TooltipPosition.valueOf(getState(false).position);
+    }
+
+    /**
+     * Sets position transition duration in milliseconds. If value provided is
+     * less than zero, duration is set to zero
+     *
+     * @param durationMs
+     *            int duration of transition
+     * @return TooltipProfile
+     */
+    public TooltipProfile setPositionTransitionDuration(int durationMs) {
+        getState(true).positionTransDurationMs = Math
+                .max(durationMs, 0);
+        return this;
+    }
+
+    public int getPositionTransitionDuration() {
+        return getState(false).positionTransDurationMs;
+    }
+
+    /**
+     * Sets opacity transition duration in milliseconds. If value provided is
+     * less than zero, duration is set to zero
+     *
+     * @param durationMs
+     *            int duration of transition
+     * @return TooltipProfile
+     */
+    public TooltipProfile setOpacityTransitionDuration(int durationMs) {
+        getState(true).opacityTransDurationMs = Math
+                .max(durationMs, 0);
+        return this;
+    }
+
+    public int getOpacityTransitionDuration() {
+        return getState(false).opacityTransDurationMs;
+    }
+
+    /**
+     * Add custom style name to the profile. If style is already present, or
+     * null or empty, this method has no effect.
+     *
+     * @param stylename
+     *            String
+     * @return TooltipProfile
+     */
+    public TooltipProfile addStyleName(String stylename) {
+        if (stylename != null && !stylename.trim().isEmpty()
+                && !getStyleNames().contains(stylename)) {
+            getState(true).styleNames.add(stylename);
+        }
+        return this;
+    }
+
+    /**
+     * Remove style name from the profile, if the name is not present this
+     * method has no effect.
+     *
+     * @param stylename
+     *            String
+     * @return TooltipProfile
+     */
+    public TooltipProfile removeStyleName(String stylename) {
+        if (getStyleNames().contains(stylename)) {
+            getState(true).styleNames.remove(stylename);
+        }
+        return this;
+    }
+
+    /**
+     * Returns style names added to the profile
+     *
+     * @return List<String> unmodifiable list of style names
+     */
+    public List<String> getStyleNames() {
+        return Collections.unmodifiableList(
+                getState(false).styleNames);
+    }
+}
@@ -0,0 +1,632 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.vaadin.addons.TooltipExtension.client.TooltipProfileState;
+import org.vaadin.addons.TooltipExtension.client.TooltipRegistryClientRpc;
+import org.vaadin.addons.TooltipExtension.client.TooltipRegistryServerRpc;
+import org.vaadin.addons.TooltipExtension.client.TooltipRegistryState;
+
+import com.vaadin.server.AbstractExtension;
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.ClientMethodInvocation;
+import com.vaadin.server.Extension;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.HasComponents;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.Window;
+
+/**
+ * UI level extension holding the configuration shared by the tooltips of the
+ * UI. There is one registry per UI, use {@link #get(UI)} to obtain it.
+ */
+public class TooltipRegistry extends AbstractExtension {
+
+    private Map<String, TooltipProfile> profiles = new HashMap<>();
+    /*
+     * String table of the UI. Each distinct tooltip text and style name list
+     * is sent to the client once, tooltip states refer to it by index. When
+     * ever changing texts fill the table, values are sent inline until the
+     * table is reset after the response, and the tooltips then add the
+     * values they still use to the new table.
+     */
+    private static final int MAX_STRINGS = 4096;
+    private List<String> strings = new ArrayList<>();
+    private Map<String, Integer> stringIndexes = new HashMap<>();
+    private boolean stringsResetScheduled = false;
+    /*
+     * Strings added since the pending RPC calls were last written, all sent
+     * in one setStrings call. The call is queued with this list when the
+     * first string is added, later strings are appended to the list until
+     * the call is written with the response. newStringsStart is the index
+     * of the first of them.
+     */
+    private transient List<String> newStrings;
+    private transient int newStringsStart;
+    /*
+     * Live content components of content tooltips, least recently shown
+     * first. Shown in contentWindow, which is only in the UI while a content
+     * tooltip is shown.
+     */
+    private LinkedHashMap<TooltipExtension, LiveContent> contents = new LinkedHashMap<>(
+            16, 0.75f, true);
+    private Window contentWindow;
+    private TooltipExtension shownContent;
+    private long contentIdleTimeoutMs = 30000;
+    private int maxLiveContents = 10;
+    // Time the client is asked to release idle content at, or -1
+    private long releaseScheduledAt = -1;
+    /*
+     * Usage counters by tooltip id, capped like the string table since the
+     * ids come from the client
+     */
+    private static final int MAX_USAGE_IDS = 4096;
+    private ConcurrentHashMap<String, TooltipUsage> usage = new ConcurrentHashMap<>();
+    private List<TooltipUsageListener> usageListeners = new ArrayList<>();
+
+    private static class LiveContent implements Serializable {
+        private final Component component;
+        private long hiddenAt;
+
+        private LiveContent(Component component) {
+            this.component = component;
+        }
+    }
+
+    protected TooltipRegistry(UI ui) {
+        registerRpc(new TooltipRegistryServerRpc() {
+
+            @Override
+            public void requestTooltipTexts(List<String> connectorIds) {
+                loadTooltipTexts(connectorIds);
+            }
+
+            @Override
+            public void releaseIdleContents() {
+                TooltipRegistry.this.releaseIdleContents();
+            }
+
+            @Override
+            public void reportTooltipUsage(Map<String, Integer> shows,
+                    Map<String, Integer> dwellMs) {
+                addUsage(shows, dwellMs);
+            }
+        });
+        extend(ui);
+    }
+
+    /**
+     * Returns the registry of the UI, creating it if the UI does not have one
+     * yet
+     *
+     * @param ui
+     *            UI
+     * @return TooltipRegistry
+     */
+    public static TooltipRegistry get(UI ui) {
+        for (Extension e : ui.getExtensions()) {
+            if (e instanceof TooltipRegistry) {
+                return (TooltipRegistry) e;
+            }
+        }
+        return new TooltipRegistry(ui);
+    }
+
+    @Override
+    protected TooltipRegistryState getState() {
+        return (TooltipRegistryState) super.getState();
+    }
+
+    @Override
+    protected TooltipRegistryState getState(boolean markAsDirty) {
+        return (TooltipRegistryState) super.getState(markAsDirty);
+    }
+
+    /**
+     * Returns the tooltip profile with the given name, registering a new
+     * profile with default styling if there is none yet. Tooltips refer to a
+     * profile with {@link TooltipExtensionBuilder#setProfile(String)}.
+     *
+     * @param name
+     *            String name of the profile
+     * @return TooltipProfile
+     */
+    public TooltipProfile getProfile(String name) {
+        TooltipProfile profile = profiles.get(name);
+        if (profile == null) {
+            profile = new TooltipProfile(this, name);
+            profiles.put(name, profile);
+            getState().profiles.put(name, new TooltipProfileState());
+        }
+        return profile;
+    }
+
+    /**
+     * Removes the profile with the given name. Tooltips referring to the
+     * profile use their own styling after this. The removed
+     * {@link TooltipProfile} throws IllegalStateException when used.
+     *
+     * @param name
+     *            String name of the profile
+     */
+    public void removeProfile(String name) {
+        if (profiles.remove(name) != null) {
+            getState().profiles.remove(name);
+        }
+    }
+
+    /**
+     * Registers a tooltip template. Templates are HTML with parameters in
+     * braces, for example "Last changed by {user} on {date}". They are sent to
+     * the client once, and each tooltip using the template only carries the
+     * template id and its parameter values, see
+     * {@link TooltipExtensionBuilder#createTooltipFromTemplate(com.vaadin.ui.AbstractComponent, String, Map)}.
+     * Registering a template with an existing id replaces the template.
+     *
+     * @param templateId
+     *            String id of the template
+     * @param template
+     *            String template HTML
+     */
+    public void registerTemplate(String templateId, String template) {
+        String html = template == null ? "" : template;
+        if (!html.equals(getState(false).templates.get(templateId))) {
+            getState().templates.put(templateId, html);
+        }
+    }
+
+    /**
+     * Returns the template registered with the id, or null if there is none
+     *
+     * @param templateId
+     *            String id of the template
+     * @return String template HTML or null
+     */
+    public String getTemplate(String templateId) {
+        return getState(false).templates.get(templateId);
+    }
+
+    /**
+     * Removes the template with the id. Tooltips using the template become
+     * empty.
+     *
+     * @param templateId
+     *            String id of the template
+     */
+    public void removeTemplate(String templateId) {
+        if (getState(false).templates.containsKey(templateId)) {
+            getState().templates.remove(templateId);
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds after which a hidden content component
+     * is released
+     *
+     * @return long
+     */
+    public long getContentIdleTimeout() {
+        return contentIdleTimeoutMs;
+    }
+
+    /**
+     * Sets the time in milliseconds after which the content component of a
+     * hidden content tooltip is released, see
+     * {@link TooltipExtensionBuilder#createContentTooltip(AbstractComponent, TooltipContentFactory)}.
+     * Defaults to 30 seconds. Released content is created again by the
+     * factory when the tooltip is shown the next time. The client asks the
+     * server to release idle content when the next content becomes idle.
+     *
+     * @param timeoutMs
+     *            long
+     */
+    public void setContentIdleTimeout(long timeoutMs) {
+        contentIdleTimeoutMs = timeoutMs < 0 ? 0 : timeoutMs;
+        releaseContents();
+    }
+
+    /**
+     * Returns the maximum number of live content components in the UI
+     *
+     * @return int
+     */
+    public int getMaxLiveContents() {
+        return maxLiveContents;
+    }
+
+    /**
+     * Sets the maximum number of live content components of content tooltips
+     * in the UI. When a new content component would exceed it, the least
+     * recently shown one is released. Defaults to 10.
+     *
+     * @param maxLiveContents
+     *            int, at least 1
+     */
+    public void setMaxLiveContents(int maxLiveContents) {
+        this.maxLiveContents = Math.max(1, maxLiveContents);
+        releaseContents();
+    }
+
+    /**
+     * Returns the number of live content components in the UI
+     *
+     * @return int
+     */
+    public int getLiveContentCount() {
+        return contents.size();
+    }
+
+    /**
+     * Returns the fraction of tooltip shows that are reported
+     *
+     * @return double
+     */
+    public double getUsageSampleRate() {
+        return getState(false).usageSampleRate;
+    }
+
+    /**
+     * Sets the fraction of tooltip shows, between 0 and 1, that the client
+     * counts along with the time the tooltip stays visible. The counts are
+     * sent to the server in one batch every usage flush interval and when the
+     * page is unloaded, and are added to the counters returned by
+     * {@link #getUsage()}. Only tooltips with an id are counted. Defaults to
+     * 0, which disables usage reporting.
+     *
+     * @param sampleRate
+     *            double
+     */
+    public void setUsageSampleRate(double sampleRate) {
+        double rate = Math.max(0, Math.min(1, sampleRate));
+        if (rate != getState(false).usageSampleRate) {
+            getState().usageSampleRate = rate;
+        }
+    }
+
+    /**
+     * Returns the interval in milliseconds at which the client reports usage
+     *
+     * @return int
+     */
+    public int getUsageFlushInterval() {
+        return getState(false).usageFlushIntervalMs;
+    }
+
+    /**
+     * Sets the interval in milliseconds at which the client reports the
+     * counted usage. Defaults to 30 seconds.
+     *
+     * @param intervalMs
+     *            int, at least 1000
+     */
+    public void setUsageFlushInterval(int intervalMs) {
+        int interval = Math.max(1000, intervalMs);
+        if (interval != getState(false).usageFlushIntervalMs) {
+            getState().usageFlushIntervalMs = interval;
+        }
+    }
+
+    /**
+     * Returns the usage counters reported for the UI by tooltip id. The map
+     * is a live unmodifiable view that may be read from any thread.
+     *
+     * @return Map<String, TooltipUsage>
+     */
+    public Map<String, TooltipUsage> getUsage() {
+        return Collections.unmodifiableMap(usage);
+    }
+
+    /**
+     * Returns the usage counters of the tooltip id, or null if no usage has
+     * been reported for it
+     *
+     * @param tooltipId
+     *            String id of the tooltip
+     * @return TooltipUsage or null
+     */
+    public TooltipUsage getUsage(String tooltipId) {
+        return usage.get(tooltipId);
+    }
+
+    /**
+     * Removes all usage counters of the UI
+     */
+    public void resetUsage() {
+        usage.clear();
+    }
+
+    /**
+     * Adds a listener notified of each usage report of the client. Listeners
+     * are called in the request thread while the session is locked.
+     *
+     * @param listener
+     *            TooltipUsageListener
+     */
+    public void addUsageListener(TooltipUsageListener listener) {
+        if (listener != null && !usageListeners.contains(listener)) {
+            usageListeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes a listener added with
+     * {@link #addUsageListener(TooltipUsageListener)}
+     *
+     * @param listener
+     *            TooltipUsageListener
+     */
+    public void removeUsageListener(TooltipUsageListener listener) {
+        usageListeners.remove(listener);
+    }
+
+    /**
+     * Adds a usage report of the client to the counters and notifies the
+     * listeners. Negative values are ignored.
+     */
+    void addUsage(Map<String, Integer> shows,
+            Map<String, Integer> dwellMs) {
+        for (Map.Entry<String, Integer> entry : shows.entrySet()) {
+            String tooltipId = entry.getKey();
+            Integer dwell = dwellMs.get(tooltipId);
+            int showCount = entry.getValue() == null ? 0 : entry.getValue();
+            long dwellTime = dwell == null ? 0 : dwell;
+            if (tooltipId == null || showCount < 0 || dwellTime < 0) {
+                continue;
+            }
+            TooltipUsage counters = usage.get(tooltipId);
+            if (counters == null) {
+                if (usage.size() >= MAX_USAGE_IDS) {
+                    continue;
+                }
+                TooltipUsage added = new TooltipUsage();
+                counters = usage.putIfAbsent(tooltipId, added);
+                if (counters == null) {
+                    counters = added;
+                }
+            }
+            counters.add(showCount, dwellTime);
+            for (TooltipUsageListener listener : new ArrayList<>(
+                    usageListeners)) {
+                listener.usageReported(tooltipId, showCount, dwellTime);
+            }
+        }
+    }
+
+    /**
+     * Shows the content of the tooltip in the content window at the given
+     * position, creating the content with the factory if it is not live
+     */
+    void showContent(TooltipExtension te, TooltipContentFactory factory,
+            int left, int top) {
+        LiveContent content = contents.get(te);
+        if (content == null) {
+            content = new LiveContent(
+                    factory.createContent((AbstractComponent) te.getParent()));
+            contents.put(te, content);
+        }
+        LiveContent previous = shownContent == null ? null
+                : contents.get(shownContent);
+        if (previous != null && previous != content) {
+            previous.hiddenAt = System.currentTimeMillis();
+        }
+        shownContent = te;
+        releaseContents();
+        if (contentWindow == null) {
+            contentWindow = new Window();
+            contentWindow.setClosable(false);
+            contentWindow.setResizable(false);
+            contentWindow.setDraggable(false);
+            contentWindow.addStyleName("customTooltipContent");
+        }
+        contentWindow.setContent(content.component);
+        contentWindow.setPositionX(left);
+        contentWindow.setPositionY(top);
+        if (contentWindow.getParent() == null) {
+            getUI().addWindow(contentWindow);
+        }
+    }
+
+    /**
+     * Hides the content of the tooltip if it is shown. The content stays live
+     * until it has been hidden for the idle timeout.
+     */
+    void hideContent(TooltipExtension te) {
+        LiveContent content = contents.get(te);
+        if (content != null) {
+            content.hiddenAt = System.currentTimeMillis();
+        }
+        if (shownContent == te) {
+            shownContent = null;
+            contentWindow.setContent(null);
+            getUI().removeWindow(contentWindow);
+        }
+        releaseContents();
+    }
+
+    /**
+     * Releases the content of the tooltip, used when the tooltip is removed
+     */
+    void releaseContent(TooltipExtension te) {
+        if (shownContent == te) {
+            hideContent(te);
+        }
+        contents.remove(te);
+    }
+
+    /**
+     * Releases content components that have been hidden for the idle timeout,
+     * and the least recently shown ones above the maximum count
+     */
+    private void releaseContents() {
+        long now = System.currentTimeMillis();
+        long idleSince = now - contentIdleTimeoutMs;
+        long firstHiddenAt = -1;
+        int excess = contents.size() - maxLiveContents;
+        Iterator<Map.Entry<TooltipExtension, LiveContent>> entries = contents
+                .entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<TooltipExtension, LiveContent> entry = entries.next();
+            if (entry.getKey() == shownContent) {
+                continue;
+            }
+            long hiddenAt = entry.getValue().hiddenAt;
+            if (excess > 0 || hiddenAt <= idleSince) {
+                entries.remove();
+                excess--;
+            } else if (firstHiddenAt < 0 || hiddenAt < firstHiddenAt) {
+                firstHiddenAt = hiddenAt;
+            }
+        }
+        // Idle content is not released by requests alone, the client calls
+        // back when the next hidden content becomes idle
+        long releaseAt = firstHiddenAt < 0 ? -1
+                : firstHiddenAt + contentIdleTimeoutMs;
+        if (releaseAt >= 0 && releaseAt != releaseScheduledAt) {
+            getRpcProxy(TooltipRegistryClientRpc.class)
+                    .scheduleContentRelease((int) Math.min(Integer.MAX_VALUE,
+                            releaseAt - now));
+        }
+        releaseScheduledAt = releaseAt;
+    }
+
+    /**
+     * Releases the content components that have been hidden for the idle
+     * timeout. Called by the client when the next hidden content becomes
+     * idle.
+     */
+    void releaseIdleContents() {
+        releaseScheduledAt = -1;
+        releaseContents();
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        // Receives the usage reported when the page is unloaded
+        TooltipUsageRequestHandler.register(getSession());
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+        if (!contents.isEmpty()) {
+            releaseContents();
+        }
+        if (initial && !strings.isEmpty()
+                && (newStrings == null || newStringsStart > 0)) {
+            // The client has no table yet, for example after a refresh. A
+            // pending call starting at index 0 already carries the whole
+            // table, one starting later is emptied and replaced.
+            if (newStrings != null) {
+                newStrings.clear();
+            }
+            newStrings = new ArrayList<>(strings);
+            newStringsStart = 0;
+            getRpcProxy(TooltipRegistryClientRpc.class).setStrings(0,
+                    newStrings);
+        }
+    }
+
+    @Override
+    public List<ClientMethodInvocation> retrievePendingRpcCalls() {
+        // The pending setStrings call is written now, the next new string
+        // starts another one
+        newStrings = null;
+        return super.retrievePendingRpcCalls();
+    }
+
+    /**
+     * Returns the index of the value in the string table of the UI, adding it
+     * to the table and sending it to the client if it is not there yet, or -1
+     * if the table is full
+     */
+    int getStringRef(String value) {
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            if (strings.size() >= MAX_STRINGS) {
+                scheduleStringsReset();
+                return -1;
+            }
+            index = strings.size();
+            strings.add(value);
+            stringIndexes.put(value, index);
+            if (newStrings == null) {
+                newStrings = new ArrayList<>();
+                newStringsStart = index;
+                getRpcProxy(TooltipRegistryClientRpc.class).setStrings(index,
+                        newStrings);
+            }
+            newStrings.add(value);
+        }
+        return index;
+    }
+
+    /**
+     * Resets the string table once the current response has been written.
+     * Tooltips sent in the current response still refer to the old table.
+     */
+    private void scheduleStringsReset() {
+        if (stringsResetScheduled) {
+            return;
+        }
+        stringsResetScheduled = true;
+        getUI().access(new Runnable() {
+
+            @Override
+            public void run() {
+                resetStrings();
+            }
+        });
+    }
+
+    /**
+     * Empties the string table and marks all tooltips of the UI dirty, so
+     * that the values still in use are added to the new table and sent to
+     * the client in one call starting at index 0, which replaces the client
+     * table
+     */
+    void resetStrings() {
+        stringsResetScheduled = false;
+        strings.clear();
+        stringIndexes.clear();
+        newStrings = null;
+        markTooltipsDirty(getUI());
+    }
+
+    private static void markTooltipsDirty(Component component) {
+        for (Extension e : component.getExtensions()) {
+            if (e instanceof TooltipExtension) {
+                ((TooltipExtension) e).markAsDirty();
+            }
+        }
+        if (component instanceof HasComponents) {
+            for (Component child : (HasComponents) component) {
+                markTooltipsDirty(child);
+            }
+        }
+    }
+
+    private void loadTooltipTexts(List<String> connectorIds) {
+        UI ui = getUI();
+        for (String connectorId : connectorIds) {
+            ClientConnector connector = ui.getConnectorTracker()
+                    .getConnector(connectorId);
+            if (connector instanceof TooltipExtension) {
+                ((TooltipExtension) connector).loadTooltipText();
+            }
+        }
+    }
+
+    TooltipProfileState getProfileState(String name, boolean markAsDirty) {
+        return getState(markAsDirty).profiles.get(name);
+    }
+}
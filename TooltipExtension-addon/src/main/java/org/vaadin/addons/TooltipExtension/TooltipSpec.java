@@ -0,0 +1,210 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder.TooltipPosition;
+
+//@formatter:off
+/**
+ * Immutable tooltip configuration of text, position, style names and
+ * transition durations. Specs are interned, so equal specs are the same
+ * instance application wide, and tooltips created from a spec refer to the
+ * shared instance and its strings instead of copies of their own. Specs are
+ * thread-safe and can be built once at startup and used in all sessions.
+ * <pre>
+ *      static final TooltipSpec REQUIRED = TooltipSpec.of("Required",
+ *              TooltipPosition.RIGHT, 250, 250, "requiredTooltip");
+ *      ...
+ *      new TooltipExtensionBuilder().createTooltip(field, REQUIRED);
+ * </pre>
+ */
+//@formatter:on
+public final class TooltipSpec implements Serializable {
+
+    /*
+     * Interned specs. Both keys and values are weak, so specs no tooltip or
+     * application code refers to anymore are dropped.
+     */
+    private static final Map<TooltipSpec, WeakReference<TooltipSpec>> INTERNED = Collections
+            .synchronizedMap(
+                    new WeakHashMap<TooltipSpec, WeakReference<TooltipSpec>>());
+
+    private final String text;
+    private final TooltipPosition position;
+    private final List<String> styleNames;
+    private final int positionTransDurationMs;
+    private final int opacityTransDurationMs;
+    private transient int hash;
+
+    private TooltipSpec(String text, TooltipPosition position,
+            List<String> styleNames, int positionTransDurationMs,
+            int opacityTransDurationMs) {
+        this.text = text;
+        this.position = position;
+        this.styleNames = styleNames;
+        this.positionTransDurationMs = positionTransDurationMs;
+        this.opacityTransDurationMs = opacityTransDurationMs;
+    }
+
+    /**
+     * Returns the interned spec with the given properties. Null text is
+     * replaced by empty String, null position by
+     * {@link TooltipPosition#RIGHT}, durations less than zero by zero, and
+     * null or duplicate style names are left out.
+     *
+     * @param text
+     *            String tooltip text
+     * @param position
+     *            TooltipPosition
+     * @param positionTransDurationMs
+     *            int position transition duration in milliseconds
+     * @param opacityTransDurationMs
+     *            int opacity transition duration in milliseconds
+     * @param styleNames
+     *            String... style names
+     * @return TooltipSpec
+     */
+    public static TooltipSpec of(String text, TooltipPosition position,
+            int positionTransDurationMs, int opacityTransDurationMs,
+            String... styleNames) {
+        return of(text, position, positionTransDurationMs,
+                opacityTransDurationMs, Arrays.asList(styleNames));
+    }
+
+    /**
+     * Returns the interned spec with the given properties, see
+     * {@link #of(String, TooltipPosition, int, int, String...)}
+     *
+     * @param text
+     *            String tooltip text
+     * @param position
+     *            TooltipPosition
+     * @param positionTransDurationMs
+     *            int position transition duration in milliseconds
+     * @param opacityTransDurationMs
+     *            int opacity transition duration in milliseconds
+     * @param styleNames
+     *            Collection<String> style names, may be null
+     * @return TooltipSpec
+     */
+    public static TooltipSpec of(String text, TooltipPosition position,
+            int positionTransDurationMs, int opacityTransDurationMs,
+            Collection<String> styleNames) {
+        List<String> names = new ArrayList<>();
+        if (styleNames != null) {
+            for (String name : styleNames) {
+                if (name != null && !name.isEmpty() && !names.contains(name)) {
+                    names.add(name);
+                }
+            }
+        }
+        return intern(new TooltipSpec(text == null ? "" : text,
+                position == null ? TooltipPosition.RIGHT : position,
+                Collections.unmodifiableList(names),
+                Math.max(0, positionTransDurationMs),
+                Math.max(0, opacityTransDurationMs)));
+    }
+
+    private static TooltipSpec intern(TooltipSpec spec) {
+        synchronized (INTERNED) {
+            WeakReference<TooltipSpec> ref = INTERNED.get(spec);
+            TooltipSpec interned = ref == null ? null : ref.get();
+            if (interned == null) {
+                INTERNED.put(spec, new WeakReference<>(spec));
+                interned = spec;
+            }
+            return interned;
+        }
+    }
+
+    /**
+     * Returns the tooltip text
+     *
+     * @return String
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the tooltip position
+     *
+     * @return TooltipPosition
+     */
+    public TooltipPosition getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the style names
+     *
+     * @return List<String> unmodifiable list of style names
+     */
+    public List<String> getStyleNames() {
+        return styleNames;
+    }
+
+    /**
+     * Returns the position transition duration in milliseconds
+     *
+     * @return int
+     */
+    public int getPositionTransitionDuration() {
+        return positionTransDurationMs;
+    }
+
+    /**
+     * Returns the opacity transition duration in milliseconds
+     *
+     * @return int
+     */
+    public int getOpacityTransitionDuration() {
+        return opacityTransDurationMs;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TooltipSpec)) {
+            return false;
+        }
+        TooltipSpec other = (TooltipSpec) obj;
+        return text.equals(other.text) && position == other.position
+                && styleNames.equals(other.styleNames)
+                && positionTransDurationMs == other.positionTransDurationMs
+                && opacityTransDurationMs == other.opacityTransDurationMs;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = text.hashCode();
+            h = 31 * h + position.ordinal();
+            h = 31 * h + styleNames.hashCode();
+            h = 31 * h + positionTransDurationMs;
+            h = 31 * h + opacityTransDurationMs;
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Deserialized specs are replaced by the interned instance, so that
+     * sessions restored from storage share their specs as well
+     */
+    private Object readResolve() throws ObjectStreamException {
+        return intern(this);
+    }
+}
@@ -0,0 +1,24 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+
+import com.vaadin.ui.AbstractComponent;
+
+/**
+ * Provides the tooltip text for a component on demand. Used by
+ * {@link TooltipExtensionBuilder#createLazyTooltip(AbstractComponent, TooltipTextProvider)}
+ * so that the text is generated and sent to the client only when the tooltip
+ * is shown for the first time.
+ */
+public interface TooltipTextProvider extends Serializable {
+
+    /**
+     * Returns the tooltip text for the given component. Returning null is
+     * treated as an empty String.
+     *
+     * @param component
+     *            target component of the tooltip
+     * @return String
+     */
+    String getTooltipText(AbstractComponent component);
+}
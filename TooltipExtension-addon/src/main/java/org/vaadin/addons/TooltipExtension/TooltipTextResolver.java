@@ -0,0 +1,28 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * Resolves tooltip texts by message key, for example from resource bundles or
+ * a database. Used by
+ * {@link TooltipExtensionBuilder#createTooltipForKey(com.vaadin.ui.AbstractComponent, String)}.
+ * Wrap the resolver in a {@link CachingTooltipTextResolver} shared by the
+ * application to avoid resolving the same texts again for every session.
+ * {@link TooltipExtensionBuilder} does not serialize its resolver, set it
+ * again after the session has been restored.
+ */
+public interface TooltipTextResolver extends Serializable {
+
+    /**
+     * Returns the tooltip text for the message key in the given locale.
+     * Returning null is treated as an empty String.
+     *
+     * @param key
+     *            String message key
+     * @param locale
+     *            Locale of the target component
+     * @return String
+     */
+    String resolveTooltipText(String key, Locale locale);
+}
@@ -0,0 +1,43 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Usage counters of one tooltip id in a UI, see
+ * {@link TooltipRegistry#setUsageSampleRate(double)}. The counters are
+ * updated without locking and may be read from any thread. They count the
+ * sampled shows only, divide by the sample rate for an estimate of all shows.
+ */
+public final class TooltipUsage implements Serializable {
+
+    private final AtomicLong showCount = new AtomicLong();
+    private final AtomicLong dwellTimeMs = new AtomicLong();
+
+    TooltipUsage() {
+    }
+
+    void add(long shows, long dwellMs) {
+        showCount.addAndGet(shows);
+        dwellTimeMs.addAndGet(dwellMs);
+    }
+
+    /**
+     * Returns the number of sampled times the tooltip was shown
+     *
+     * @return long
+     */
+    public long getShowCount() {
+        return showCount.get();
+    }
+
+    /**
+     * Returns the total time in milliseconds the sampled shows of the tooltip
+     * were visible
+     *
+     * @return long
+     */
+    public long getDwellTimeMs() {
+        return dwellTimeMs.get();
+    }
+}
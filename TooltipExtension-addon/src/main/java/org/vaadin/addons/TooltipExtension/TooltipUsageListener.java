@@ -0,0 +1,23 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.Serializable;
+
+/**
+ * Notified when the client reports tooltip usage, see
+ * {@link TooltipRegistry#addUsageListener(TooltipUsageListener)}
+ */
+public interface TooltipUsageListener extends Serializable {
+
+    /**
+     * Called for each tooltip id in a usage report of the client, after the
+     * counters of the registry have been updated
+     *
+     * @param tooltipId
+     *            String id of the tooltip
+     * @param shows
+     *            int number of sampled shows since the previous report
+     * @param dwellMs
+     *            long time in milliseconds the sampled shows were visible
+     */
+    void usageReported(String tooltipId, int shows, long dwellMs);
+}
@@ -0,0 +1,128 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.vaadin.addons.TooltipExtension.client.TooltipRegistryServerRpc;
+
+import com.vaadin.server.Extension;
+import com.vaadin.server.RequestHandler;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+
+import elemental.json.Json;
+import elemental.json.JsonException;
+import elemental.json.JsonObject;
+import elemental.json.JsonType;
+
+/**
+ * Receives the tooltip usage the client sends with navigator.sendBeacon when
+ * the page is unloaded, as a regular server call would be cancelled by the
+ * browser. The beacon carries the UI id and the CSRF token of the session,
+ * and is added to the counters of the {@link TooltipRegistry} of the UI.
+ */
+class TooltipUsageRequestHandler implements RequestHandler {
+
+    private static final String PATH = "/"
+            + TooltipRegistryServerRpc.USAGE_BEACON_PATH;
+    private static final int MAX_LENGTH = 65536;
+
+    private TooltipUsageRequestHandler() {
+    }
+
+    /**
+     * Adds the handler to the session unless it already has one
+     *
+     * @param session
+     *            VaadinSession
+     */
+    static void register(VaadinSession session) {
+        for (RequestHandler handler : session.getRequestHandlers()) {
+            if (handler instanceof TooltipUsageRequestHandler) {
+                return;
+            }
+        }
+        session.addRequestHandler(new TooltipUsageRequestHandler());
+    }
+
+    @Override
+    public boolean handleRequest(VaadinSession session, VaadinRequest request,
+            VaadinResponse response) throws IOException {
+        if (!PATH.equals(request.getPathInfo())) {
+            return false;
+        }
+        JsonObject beacon;
+        try {
+            beacon = Json.parse(readBody(request));
+        } catch (JsonException | ClassCastException e) {
+            response.sendError(400, "Malformed tooltip usage");
+            return true;
+        }
+        session.lock();
+        try {
+            if (!beacon.hasKey("csrf")
+                    || beacon.get("csrf").getType() != JsonType.STRING
+                    || !session.getCsrfToken()
+                            .equals(beacon.getString("csrf"))) {
+                response.sendError(403, "Invalid security key");
+                return true;
+            }
+            UI ui = beacon.hasKey("ui")
+                    && beacon.get("ui").getType() == JsonType.NUMBER
+                            ? session.getUIById(
+                                    (int) beacon.getNumber("ui"))
+                            : null;
+            TooltipRegistry registry = ui == null ? null : findRegistry(ui);
+            if (registry != null) {
+                registry.addUsage(readCounts(beacon, "shows"),
+                        readCounts(beacon, "dwellMs"));
+            }
+        } finally {
+            session.unlock();
+        }
+        response.setStatus(204);
+        return true;
+    }
+
+    private static TooltipRegistry findRegistry(UI ui) {
+        for (Extension e : ui.getExtensions()) {
+            if (e instanceof TooltipRegistry) {
+                return (TooltipRegistry) e;
+            }
+        }
+        return null;
+    }
+
+    private static String readBody(VaadinRequest request) throws IOException {
+        StringBuilder body = new StringBuilder();
+        BufferedReader reader = request.getReader();
+        char[] buffer = new char[1024];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            body.append(buffer, 0, read);
+            if (body.length() > MAX_LENGTH) {
+                throw new JsonException("Tooltip usage too long");
+            }
+        }
+        return body.toString();
+    }
+
+    private static Map<String, Integer> readCounts(JsonObject beacon,
+            String key) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (beacon.hasKey(key)
+                && beacon.get(key).getType() == JsonType.OBJECT) {
+            JsonObject values = beacon.getObject(key);
+            for (String tooltipId : values.keys()) {
+                if (values.get(tooltipId).getType() == JsonType.NUMBER) {
+                    counts.put(tooltipId, (int) values.getNumber(tooltipId));
+                }
+            }
+        }
+        return counts;
+    }
+}
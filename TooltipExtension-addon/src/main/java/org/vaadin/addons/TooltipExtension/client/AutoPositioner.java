@@ -0,0 +1,186 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.user.client.Window;
+
+/**
+ * Sizes tooltip anchors and places tooltips with the AUTO position once per
+ * animation frame. All geometry of the frame is read before any tooltip is
+ * updated, so updating any number of tooltips forces at most one layout. The
+ * viewport size is cached until the window is resized or anything is
+ * scrolled, which also invalidates the geometry cached by the tooltips.
+ */
+class AutoPositioner {
+
+    /**
+     * Tooltip layout updated in an animation frame
+     */
+    interface Layout {
+
+        /**
+         * Reads the geometry the layout needs, without writing to the DOM
+         */
+        void measureLayout();
+
+        /**
+         * Writes the layout from the measured geometry, without reading from
+         * the DOM
+         */
+        void applyLayout();
+    }
+
+    static final int MARGIN = 5;
+
+    private static List<Layout> scheduled = new ArrayList<>();
+    private static boolean listening = false;
+    private static int generation = 0;
+    private static int viewportWidth = -1;
+    private static int viewportHeight = -1;
+
+    private AutoPositioner() {
+    }
+
+    /**
+     * Measures and applies the layout in the next animation frame
+     *
+     * @param layout
+     *            Layout
+     */
+    static void schedule(Layout layout) {
+        if (!listening) {
+            listening = true;
+            addInvalidationListeners();
+        }
+        if (scheduled.contains(layout)) {
+            return;
+        }
+        scheduled.add(layout);
+        if (scheduled.size() == 1) {
+            requestFrame();
+        }
+    }
+
+    static void cancel(Layout layout) {
+        scheduled.remove(layout);
+    }
+
+    /**
+     * Returns a number that changes whenever cached geometry becomes invalid
+     *
+     * @return int
+     */
+    static int getGeneration() {
+        return generation;
+    }
+
+    static int getViewportWidth() {
+        return viewportWidth;
+    }
+
+    static int getViewportHeight() {
+        return viewportHeight;
+    }
+
+    /**
+     * Returns the side of the target the tooltip is placed on: the first of
+     * TOP, BOTTOM, RIGHT and LEFT where it fits in the viewport, or the side
+     * with most room if it fits nowhere. The geometry is relative to the
+     * viewport, which must have been measured in this frame.
+     *
+     * @param targetLeft
+     *            int
+     * @param targetTop
+     *            int
+     * @param targetWidth
+     *            int
+     * @param targetHeight
+     *            int
+     * @param tooltipWidth
+     *            int
+     * @param tooltipHeight
+     *            int
+     * @param shiftable
+     *            boolean true if the tooltip can be moved along the side of
+     *            the target to stay in the viewport, false if it is always
+     *            centered on the target
+     * @return String TOP, BOTTOM, RIGHT or LEFT
+     */
+    static String choosePlacement(int targetLeft, int targetTop,
+            int targetWidth, int targetHeight, int tooltipWidth,
+            int tooltipHeight, boolean shiftable) {
+        int roomAbove = targetTop;
+        int roomBelow = viewportHeight - targetTop - targetHeight;
+        int roomLeft = targetLeft;
+        int roomRight = viewportWidth - targetLeft - targetWidth;
+        int centerX = targetLeft + targetWidth / 2;
+        int centerY = targetTop + targetHeight / 2;
+        boolean fitsHorizontally = shiftable
+                ? tooltipWidth + 2 * MARGIN <= viewportWidth
+                : centerX >= tooltipWidth / 2
+                        && centerX + tooltipWidth / 2 <= viewportWidth;
+        boolean fitsVertically = shiftable
+                ? tooltipHeight + 2 * MARGIN <= viewportHeight
+                : centerY >= tooltipHeight / 2
+                        && centerY + tooltipHeight / 2 <= viewportHeight;
+        int needHeight = tooltipHeight + MARGIN;
+        int needWidth = tooltipWidth + MARGIN;
+        if (fitsHorizontally && roomAbove >= needHeight) {
+            return "TOP";
+        } else if (fitsHorizontally && roomBelow >= needHeight) {
+            return "BOTTOM";
+        } else if (fitsVertically && roomRight >= needWidth) {
+            return "RIGHT";
+        } else if (fitsVertically && roomLeft >= needWidth) {
+            return "LEFT";
+        }
+        int most = Math.max(Math.max(roomAbove, roomBelow),
+                Math.max(roomLeft, roomRight));
+        return most == roomAbove ? "TOP"
+                : most == roomBelow ? "BOTTOM"
+                        : most == roomRight ? "RIGHT" : "LEFT";
+    }
+
+    private static void onFrame() {
+        List<Layout> layouts = scheduled;
+        scheduled = new ArrayList<>();
+        if (viewportWidth < 0) {
+            viewportWidth = Window.getClientWidth();
+            viewportHeight = Window.getClientHeight();
+        }
+        for (Layout layout : layouts) {
+            layout.measureLayout();
+        }
+        for (Layout layout : layouts) {
+            layout.applyLayout();
+        }
+    }
+
+    private static void invalidate() {
+        generation++;
+        viewportWidth = -1;
+        viewportHeight = -1;
+    }
+
+    private static native void requestFrame()
+    /*-{
+        var callback = $entry(function() {
+            @org.vaadin.addons.TooltipExtension.client.AutoPositioner::onFrame()();
+        });
+        if ($wnd.requestAnimationFrame) {
+            $wnd.requestAnimationFrame(callback);
+        } else {
+            $wnd.setTimeout(callback, 16);
+        }
+    }-*/;
+
+    private static native void addInvalidationListeners()
+    /*-{
+        var invalidate = $entry(function() {
+            @org.vaadin.addons.TooltipExtension.client.AutoPositioner::invalidate()();
+        });
+        $wnd.addEventListener('resize', invalidate, false);
+        $doc.addEventListener('scroll', invalidate, true);
+    }-*/;
+}
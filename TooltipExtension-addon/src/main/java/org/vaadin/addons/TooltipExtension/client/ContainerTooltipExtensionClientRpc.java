@@ -0,0 +1,30 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.shared.communication.ClientRpc;
+
+public interface ContainerTooltipExtensionClientRpc extends ClientRpc {
+
+    /**
+     * Appends distinct specs to the specs of the container, after the specs
+     * of the state and of earlier calls.
+     *
+     * @param startIndex
+     *            int index of the first spec
+     * @param specs
+     *            List<TooltipSpecState> specs
+     */
+    void addSpecs(int startIndex, List<TooltipSpecState> specs);
+
+    /**
+     * Updates the tooltips of the changed child components only. Maps the
+     * connector id of each child to the index of its spec, -1 removes the
+     * tooltip of the child.
+     *
+     * @param tooltips
+     *            Map<String, Integer> spec indexes by connector id
+     */
+    void updateTooltips(Map<String, Integer> tooltips);
+}
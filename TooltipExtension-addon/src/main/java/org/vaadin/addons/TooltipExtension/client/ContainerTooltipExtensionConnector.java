@@ -0,0 +1,187 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.vaadin.addons.TooltipExtension.ContainerTooltipExtension;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.Widget;
+import com.vaadin.client.ComponentConnector;
+import com.vaadin.client.ServerConnector;
+import com.vaadin.client.WidgetUtil;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.client.extensions.AbstractExtensionConnector;
+import com.vaadin.shared.ui.Connect;
+import com.vaadin.shared.ui.Connect.LoadStyle;
+
+/**
+ * Shows the tooltips of the child components of a container in the shared
+ * tooltip overlay. One connector serves all children, the hovered child is
+ * looked up by the widgets around the hovered element when the pointer enters
+ * it, so children that are sent to the client or get a new widget later still
+ * find their tooltip. The tooltips of the state are updated child by
+ * child through {@link ContainerTooltipExtensionClientRpc} until the state is
+ * rewritten.
+ */
+@Connect(value = ContainerTooltipExtension.class, loadStyle = LoadStyle.LAZY)
+public class ContainerTooltipExtensionConnector
+        extends AbstractExtensionConnector {
+
+    private Element containerElement;
+    private List<TooltipSpecState> specs = new ArrayList<>();
+    // Spec indexes by connector id of the child
+    private Map<String, Integer> childSpecs = new HashMap<>();
+    private String currentChildId;
+    private TooltipSpecState currentSpec = new TooltipSpecState();
+
+    private TooltipOverlay.Target overlayTarget = new TooltipOverlay.Target() {
+
+        @Override
+        public Element getAnchor(Element hovered) {
+            Widget widget = WidgetUtil.findWidget(hovered, null);
+            while (widget != null && widget.getElement() != containerElement) {
+                ComponentConnector child = getConnection().getConnectorMap()
+                        .getConnector(widget);
+                TooltipSpecState spec = child == null ? null
+                        : getSpec(child.getConnectorId());
+                if (spec != null) {
+                    currentChildId = child.getConnectorId();
+                    currentSpec = spec;
+                    return widget.getElement();
+                }
+                widget = widget.getParent();
+            }
+            return null;
+        }
+
+        @Override
+        public String getTooltipHtml(Element anchor) {
+            return currentSpec.text;
+        }
+
+        @Override
+        public String getTooltipId() {
+            return null;
+        }
+
+        @Override
+        public String getPosition() {
+            return currentSpec.position;
+        }
+
+        @Override
+        public List<String> getStyleNames() {
+            return currentSpec.styleNames;
+        }
+
+        @Override
+        public int getOpacityTransitionMs() {
+            return currentSpec.opacityTransDurationMs;
+        }
+
+        @Override
+        public int getShowDelayMs() {
+            return getState().showDelayMs;
+        }
+
+        @Override
+        public int getHideDelayMs() {
+            return getState().hideDelayMs;
+        }
+    };
+
+    public ContainerTooltipExtensionConnector() {
+        registerRpc(ContainerTooltipExtensionClientRpc.class,
+                new ContainerTooltipExtensionClientRpc() {
+
+                    @Override
+                    public void addSpecs(int startIndex,
+                            List<TooltipSpecState> values) {
+                        for (int i = 0; i < values.size(); i++) {
+                            int index = startIndex + i;
+                            while (specs.size() <= index) {
+                                specs.add(null);
+                            }
+                            specs.set(index, values.get(i));
+                        }
+                    }
+
+                    @Override
+                    public void updateTooltips(Map<String, Integer> tooltips) {
+                        for (Map.Entry<String, Integer> entry : tooltips
+                                .entrySet()) {
+                            setTooltip(entry.getKey(), entry.getValue());
+                        }
+                        refreshCurrentTooltip();
+                    }
+                });
+    }
+
+    @Override
+    public ContainerTooltipExtensionState getState() {
+        return (ContainerTooltipExtensionState) super.getState();
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent event) {
+        super.onStateChanged(event);
+        if (event.hasPropertyChanged("tooltipsRevision")) {
+            readTooltips();
+        }
+        refreshCurrentTooltip();
+    }
+
+    @Override
+    protected void extend(ServerConnector target) {
+        containerElement = ((ComponentConnector) target).getWidget()
+                .getElement();
+        TooltipOverlay.get(getConnection()).register(containerElement,
+                overlayTarget);
+    }
+
+    @Override
+    public void onUnregister() {
+        super.onUnregister();
+        if (containerElement != null) {
+            TooltipOverlay.get(getConnection()).unregister(containerElement);
+        }
+    }
+
+    /**
+     * Replaces the tooltips, and the updates received for them, with those
+     * of the state
+     */
+    private void readTooltips() {
+        specs = new ArrayList<>(getState().specs);
+        childSpecs = new HashMap<>(getState().tooltips);
+    }
+
+    /**
+     * Sets the tooltip of one child to the spec at index, or removes it if
+     * index is -1
+     */
+    private void setTooltip(String connectorId, int index) {
+        if (index < 0) {
+            childSpecs.remove(connectorId);
+        } else {
+            childSpecs.put(connectorId, index);
+        }
+    }
+
+    private TooltipSpecState getSpec(String connectorId) {
+        Integer index = childSpecs.get(connectorId);
+        return index == null || index >= specs.size() ? null
+                : specs.get(index);
+    }
+
+    private void refreshCurrentTooltip() {
+        TooltipSpecState spec = getSpec(currentChildId);
+        if (spec != null) {
+            currentSpec = spec;
+        }
+        TooltipOverlay.get(getConnection()).refresh(overlayTarget);
+    }
+}
@@ -0,0 +1,28 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.shared.communication.SharedState;
+
+public class ContainerTooltipExtensionState extends SharedState {
+    /**
+     * Distinct specs of the tooltips of the container.
+     */
+    public List<TooltipSpecState> specs = new ArrayList<>();
+    /**
+     * Index in specs of the tooltip of each child component, by connector id
+     * of the child.
+     */
+    public Map<String, Integer> tooltips = new HashMap<>();
+    /**
+     * Incremented whenever specs and tooltips are rewritten. The client then
+     * drops the updates received through
+     * {@link ContainerTooltipExtensionClientRpc}.
+     */
+    public int tooltipsRevision = 0;
+    public int showDelayMs = 0;
+    public int hideDelayMs = 0;
+}
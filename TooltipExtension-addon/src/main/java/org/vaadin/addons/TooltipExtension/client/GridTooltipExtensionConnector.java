@@ -0,0 +1,129 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.List;
+
+import org.vaadin.addons.TooltipExtension.GridTooltipExtension;
+
+import com.google.gwt.dom.client.Element;
+import com.vaadin.client.ServerConnector;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.client.connectors.GridConnector;
+import com.vaadin.client.extensions.AbstractExtensionConnector;
+import com.vaadin.client.widget.grid.CellReference;
+import com.vaadin.shared.ui.Connect;
+import com.vaadin.shared.ui.Connect.LoadStyle;
+
+import elemental.json.JsonObject;
+
+/**
+ * Shows the cell and row tooltips of a Grid in the shared tooltip overlay.
+ * The tooltip texts arrive with the row data of the Grid, so there is no
+ * tooltip DOM and no state per cell.
+ */
+@Connect(value = GridTooltipExtension.class, loadStyle = LoadStyle.LAZY)
+public class GridTooltipExtensionConnector extends AbstractExtensionConnector {
+
+    private GridConnector gridConnector;
+    private String anchorText = "";
+
+    private TooltipOverlay.Target overlayTarget = new TooltipOverlay.Target() {
+
+        @Override
+        public Element getAnchor(Element hovered) {
+            CellReference<JsonObject> cell = gridConnector.getWidget()
+                    .getCellReference(hovered);
+            JsonObject row = cell == null ? null : cell.getRow();
+            if (row == null) {
+                return null;
+            }
+            if (row.hasKey(GridTooltipExtensionState.JSONKEY_CELL_TOOLTIPS)) {
+                JsonObject cells = row.getObject(
+                        GridTooltipExtensionState.JSONKEY_CELL_TOOLTIPS);
+                String columnId = gridConnector.getColumnId(cell.getColumn());
+                if (columnId != null && cells.hasKey(columnId)) {
+                    anchorText = cells.getString(columnId);
+                    return cell.getElement();
+                }
+            }
+            if (row.hasKey(GridTooltipExtensionState.JSONKEY_ROW_TOOLTIP)) {
+                anchorText = row
+                        .getString(GridTooltipExtensionState.JSONKEY_ROW_TOOLTIP);
+                return cell.getElement().getParentElement();
+            }
+            return null;
+        }
+
+        @Override
+        public String getTooltipHtml(Element anchor) {
+            return anchorText;
+        }
+
+        @Override
+        public String getTooltipId() {
+            return null;
+        }
+
+        @Override
+        public String getPosition() {
+            TooltipProfileState profile = getProfile();
+            return profile != null ? profile.position
+                    : getState().tooltipPositionStyle;
+        }
+
+        @Override
+        public List<String> getStyleNames() {
+            TooltipProfileState profile = getProfile();
+            return profile != null ? profile.styleNames
+                    : getState().tooltipStylenames;
+        }
+
+        @Override
+        public int getOpacityTransitionMs() {
+            TooltipProfileState profile = getProfile();
+            return profile != null ? profile.opacityTransDurationMs
+                    : getState().opacityTransDurationMs;
+        }
+
+        @Override
+        public int getShowDelayMs() {
+            return getState().showDelayMs;
+        }
+
+        @Override
+        public int getHideDelayMs() {
+            return getState().hideDelayMs;
+        }
+    };
+
+    @Override
+    public GridTooltipExtensionState getState() {
+        return (GridTooltipExtensionState) super.getState();
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent event) {
+        super.onStateChanged(event);
+        TooltipOverlay.get(getConnection()).refresh(overlayTarget);
+    }
+
+    @Override
+    protected void extend(ServerConnector target) {
+        gridConnector = (GridConnector) target;
+        TooltipOverlay.get(getConnection()).register(
+                gridConnector.getWidget().getElement(), overlayTarget);
+    }
+
+    @Override
+    public void onUnregister() {
+        super.onUnregister();
+        if (gridConnector != null) {
+            TooltipOverlay.get(getConnection())
+                    .unregister(gridConnector.getWidget().getElement());
+        }
+    }
+
+    private TooltipProfileState getProfile() {
+        return TooltipRegistryConnector.getProfile(getConnection(),
+                getState().profile);
+    }
+}
@@ -0,0 +1,25 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.shared.communication.SharedState;
+
+public class GridTooltipExtensionState extends SharedState {
+    /**
+     * Key of the row tooltip in the row data sent to the client
+     */
+    public static final String JSONKEY_ROW_TOOLTIP = "ttr";
+    /**
+     * Key of the object holding cell tooltips by column id in the row data
+     * sent to the client
+     */
+    public static final String JSONKEY_CELL_TOOLTIPS = "ttc";
+
+    public List<String> tooltipStylenames = new ArrayList<>();
+    public String tooltipPositionStyle = "RIGHT";
+    public int opacityTransDurationMs = 250;
+    public int showDelayMs = 0;
+    public int hideDelayMs = 0;
+    public String profile = null;
+}
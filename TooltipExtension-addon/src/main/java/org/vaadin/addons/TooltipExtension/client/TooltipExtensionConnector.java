@@ -1,28 +1,54 @@
 package org.vaadin.addons.TooltipExtension.client;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.vaadin.addons.TooltipExtension.TooltipExtension;
 
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.EventTarget;
+import com.google.gwt.event.dom.client.MouseMoveEvent;
+import com.google.gwt.event.dom.client.MouseMoveHandler;
+import com.google.gwt.event.dom.client.MouseOutEvent;
+import com.google.gwt.event.dom.client.MouseOutHandler;
+import com.google.gwt.event.dom.client.MouseOverEvent;
+import com.google.gwt.event.dom.client.MouseOverHandler;
 import com.google.gwt.event.logical.shared.AttachEvent;
 import com.google.gwt.user.client.DOM;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.Widget;
+import com.vaadin.client.ApplicationConnection;
 import com.vaadin.client.ServerConnector;
 import com.vaadin.client.communication.RpcProxy;
 import com.vaadin.client.communication.StateChangeEvent;
 import com.vaadin.client.extensions.AbstractExtensionConnector;
 import com.vaadin.client.ui.AbstractComponentConnector;
 import com.vaadin.shared.ui.Connect;
+import com.vaadin.shared.ui.Connect.LoadStyle;
 
-@Connect(TooltipExtension.class)
+/**
+ * Client side of TooltipExtension. Like all connectors of the add-on it is
+ * loaded lazily, so the tooltip code is compiled into a deferred fragment
+ * that is downloaded only when the first tooltip of the application is
+ * attached.
+ */
+@Connect(value = TooltipExtension.class, loadStyle = LoadStyle.LAZY)
 public class TooltipExtensionConnector extends AbstractExtensionConnector {
     private enum TooltipPosition {
         TOP("customTooltipComponentTop", "bottom"),
         LEFT("customTooltipComponentLeft", "right"),
         RIGHT("customTooltipComponentRight", "left"),
-        BOTTOM("customTooltipComponentBottom", "top");
+        BOTTOM("customTooltipComponentBottom", "top"),
+        // Placed as one of the above, see AutoPositioner
+        AUTO("customTooltipComponentTop", "bottom");
         public String styleName;
         public String position;
 
@@ -33,27 +59,234 @@ public class TooltipExtensionConnector extends AbstractExtensionConnector {
     }
 
     private TooltipPosition position = TooltipPosition.RIGHT;
-    private boolean manualAttach = false;
+    // Position the tooltip is shown at, differs from position only for AUTO
+    private TooltipPosition placement = TooltipPosition.RIGHT;
+    /*
+     * Geometry read by measureAutoPosition(), relative to the viewport. The
+     * target geometry is reused until AutoPositioner invalidates it.
+     */
+    private int measuredGeneration = -1;
+    private int targetLeft;
+    private int targetTop;
+    private int targetWidth;
+    private int targetHeight;
+    private int tooltipWidth;
+    private int tooltipHeight;
+    private AutoPositioner.Layout autoLayout = new AutoPositioner.Layout() {
+
+        @Override
+        public void measureLayout() {
+            TooltipExtensionConnector.this.measureLayout();
+        }
+
+        @Override
+        public void applyLayout() {
+            TooltipExtensionConnector.this.applyLayout();
+        }
+    };
     private AttachEvent.Handler handler = new AttachEvent.Handler() {
 
         @Override
         public void onAttachOrDetach(AttachEvent event) {
-            if (event.isAttached() && !manualAttach) {
+            if (event.isAttached()) {
                 handleAttach();
+            } else {
+                handleDetach();
+            }
+        }
+    };
+
+    private MouseOverHandler mouseOverHandler = new MouseOverHandler() {
+
+        @Override
+        public void onMouseOver(MouseOverEvent event) {
+            onShowIntent();
+            if (isDelayed()) {
+                hideTimer.cancel();
+                if (!shown) {
+                    intentX = event.getClientX();
+                    intentY = event.getClientY();
+                    showTimer.schedule(getShowDelayMs());
+                }
+            }
+        }
+    };
+
+    private MouseMoveHandler mouseMoveHandler = new MouseMoveHandler() {
+
+        @Override
+        public void onMouseMove(MouseMoveEvent event) {
+            if (!isDelayed() || shown) {
+                return;
+            }
+            // Hover intent, the delay restarts while the pointer keeps moving
+            if (Math.abs(event.getClientX() - intentX)
+                    + Math.abs(event.getClientY() - intentY) > INTENT_DISTANCE) {
+                intentX = event.getClientX();
+                intentY = event.getClientY();
+                showTimer.schedule(getShowDelayMs());
+            }
+        }
+    };
+
+    private MouseOutHandler mouseOutHandler = new MouseOutHandler() {
+
+        @Override
+        public void onMouseOut(MouseOutEvent event) {
+            EventTarget related = event.getRelatedTarget();
+            if (!(Element.is(related) && baseWidget.getElement()
+                    .isOrHasChild(Element.as(related)))) {
+                onHideIntent();
             }
         }
     };
 
-    private Element parent = DOM.createDiv();
-    private Element originalParent;
-    private Element tooltip = DOM.createSpan();
-    private Element tooltipTextSpan = DOM.createSpan();
+    /*
+     * focusin and focusout listeners of the widget element. Unlike focus and
+     * blur they bubble, so they also fire when an inner input of a composite
+     * field takes or loses focus.
+     */
+    private JavaScriptObject focusInListener;
+    private JavaScriptObject focusOutListener;
+
+    /*
+     * Show and hide delays. With delays the tooltip is not shown by the CSS
+     * :hover rules but by the timers, and only one such tooltip of a UI is
+     * shown, and so animated, at a time.
+     */
+    private static final int INTENT_DISTANCE = 7;
+    // Minimum show delay of content tooltips, passing over does not show them
+    private static final int CONTENT_SHOW_DELAY_MS = 300;
+    // The shown tooltip of each UI in the page
+    private static Map<ApplicationConnection, TooltipExtensionConnector> shownTooltips = new HashMap<>();
+    private int showDelayMs = 0;
+    private int hideDelayMs = 0;
+    private boolean shown = false;
+    private int intentX;
+    private int intentY;
+    private Timer showTimer = new Timer() {
+
+        @Override
+        public void run() {
+            showTooltip();
+        }
+    };
+    private Timer hideTimer = new Timer() {
+
+        @Override
+        public void run() {
+            hideTooltip(false);
+        }
+    };
+
+    /*
+     * Number of times a tooltip was moved along with its reattached widget
+     * instead of being built again
+     */
+    private static int rebuildsAvoided = 0;
+    /*
+     * Created by addTooltip(), in lazy rendering mode on first hover or
+     * focus. The anchor is inserted as the next sibling of the widget element
+     * and given the box of the widget, the tooltip is positioned against it.
+     * The widget element itself is never moved or wrapped.
+     */
+    private Element anchor;
+    private Element tooltip;
+    private Element tooltipTextSpan;
+    private int anchorLeft = -1;
+    private int anchorTop = -1;
+    private int anchorWidth = -1;
+    private int anchorHeight = -1;
+    /*
+     * Box of the widget relative to the containing block of the anchor, read
+     * by measureLayout() when the anchor is inserted and when the pointer or
+     * focus enters the widget, and written to the anchor by applyLayout().
+     * The tooltip stays invisible until the first box has been written.
+     */
+    private boolean showIntent = false;
+    private boolean anchorBoxStale = false;
+    private boolean anchorBoxMeasured = false;
+    private int boxLeft;
+    private int boxTop;
+    private int boxWidth;
+    private int boxHeight;
     private Widget baseWidget;
     private String id;
     private String tooltipText = "";
     private List<String> tooltipStylenames = new ArrayList<>();
     private int mvmntTransitionMs = 250;
     private int opacityTransitionMs = 250;
+    private boolean textRequested = false;
+    private boolean contentShown = false;
+    /*
+     * Usage reporting. A show is counted from the show intent, or from the
+     * timer with delays, until the hide intent. usageShownAt is -1 while no
+     * sampled show is in progress.
+     */
+    private boolean usageActive = false;
+    private double usageShownAt = -1;
+    /*
+     * Values last written to the tooltip elements. State changes only update
+     * the fields above, the elements are updated once per event loop by
+     * flush(), and only where the value differs from the written one.
+     */
+    private String appliedText;
+    private String appliedId;
+    private String appliedClassName;
+    private String appliedTransition;
+    private boolean appliedDelayed = false;
+    private boolean flushScheduled = false;
+    private ScheduledCommand flushCommand = new ScheduledCommand() {
+
+        @Override
+        public void execute() {
+            flushScheduled = false;
+            flush();
+        }
+    };
+    private TooltipOverlay overlay;
+    private TooltipOverlay.Target overlayTarget = new TooltipOverlay.Target() {
+
+        @Override
+        public Element getAnchor(Element hovered) {
+            return baseWidget.getElement();
+        }
+
+        @Override
+        public String getTooltipHtml(Element anchor) {
+            return tooltipText;
+        }
+
+        @Override
+        public String getTooltipId() {
+            return id;
+        }
+
+        @Override
+        public String getPosition() {
+            return position.name();
+        }
+
+        @Override
+        public List<String> getStyleNames() {
+            return tooltipStylenames;
+        }
+
+        @Override
+        public int getOpacityTransitionMs() {
+            return opacityTransitionMs;
+        }
+
+        @Override
+        public int getShowDelayMs() {
+            return showDelayMs;
+        }
+
+        @Override
+        public int getHideDelayMs() {
+            return hideDelayMs;
+        }
+    };
 
     TooltipExtensionServerRpc rpc = RpcProxy
             .create(TooltipExtensionServerRpc.class, this);
@@ -61,33 +294,30 @@ public class TooltipExtensionConnector extends AbstractExtensionConnector {
     public TooltipExtensionConnector() {
     }
 
+    /**
+     * Returns the number of times a tooltip has been moved along with its
+     * reattached widget instead of being built again, for all tooltips of
+     * the page
+     *
+     * @return int
+     */
+    public static int getRebuildsAvoided() {
+        return rebuildsAvoided;
+    }
+
     @Override
     public void onStateChanged(StateChangeEvent event) {
         super.onStateChanged(event);
-        if (event.hasPropertyChanged("description")
-                && !getState().description.equals("")) {
-            getState().description = "";
-        }
-        if (event.hasPropertyChanged("tooltipStylenames")) {
-            tooltipStylenames = getState().tooltipStylenames;
-            updateStyles();
-        }
-        if (event.hasPropertyChanged("tooltipText")) {
-            tooltipText = getState().tooltipText;
-            tooltipTextSpan.setInnerHTML(tooltipText);
-        }
-        if (event.hasPropertyChanged("id")) {
-            id = getState().id;
-            tooltip.setId(id);
-        }
-        if (event.hasPropertyChanged("positionTransDurationMs")) {
-            mvmntTransitionMs = getState().positionTransDurationMs;
-            setDelays();
-        }
-        if (event.hasPropertyChanged("opacityTransDurationMs")) {
-            opacityTransitionMs = getState().opacityTransDurationMs;
-            setDelays();
+        if (event.hasPropertyChanged("lazyText") && getState().lazyText) {
+            textRequested = false;
+            TooltipRegistryConnector.schedulePrefetch(getConnection());
         }
+        readText();
+        id = getState().id;
+        readProfile();
+        showDelayMs = getState().showDelayMs;
+        hideDelayMs = getState().hideDelayMs;
+        scheduleFlush();
     }
 
     @Override
@@ -98,79 +328,574 @@ public class TooltipExtensionConnector extends AbstractExtensionConnector {
     @Override
     protected void extend(ServerConnector target) {
         id = getState().id;
-        tooltipText = getState().tooltipText;
-        mvmntTransitionMs = getState().positionTransDurationMs;
-        opacityTransitionMs = getState().opacityTransDurationMs;
-        position = TooltipPosition.valueOf(getState().tooltipPositionStyle);
-        tooltipStylenames = getState().tooltipStylenames;
+        readText();
+        readProfile();
         if (baseWidget == null) {
             baseWidget = ((AbstractComponentConnector) target).getWidget();
-            if (baseWidget.isAttached()) {
-                handleAttach();
+            if (getState().sharedOverlay) {
+                overlay = TooltipOverlay.get(getConnection());
+                overlay.register(baseWidget.getElement(), overlayTarget);
+            } else {
+                if (baseWidget.isAttached()) {
+                    handleAttach();
+                }
+                baseWidget.addAttachHandler(handler);
+                baseWidget.addDomHandler(mouseMoveHandler,
+                        MouseMoveEvent.getType());
             }
-            baseWidget.addAttachHandler(handler);
+            baseWidget.addDomHandler(mouseOutHandler,
+                    MouseOutEvent.getType());
+            baseWidget.addDomHandler(mouseOverHandler,
+                    MouseOverEvent.getType());
+            addFocusListeners(baseWidget.getElement());
         }
     }
 
-    private void handleAttach() {
-        originalParent = baseWidget.getElement().getParentElement();
-        if (originalParent.hasClassName("customTooltipWidget")) {
-            parent = originalParent;
-            tooltip = parent.getFirstChildElement();
-            tooltipTextSpan = tooltip.getFirstChildElement();
-            addTooltip();
+    @Override
+    public void onUnregister() {
+        super.onUnregister();
+        endUsage();
+        showTimer.cancel();
+        hideTimer.cancel();
+        clearShownTooltip();
+        AutoPositioner.cancel(autoLayout);
+        if (baseWidget != null) {
+            removeFocusListeners(baseWidget.getElement());
+        }
+        if (overlay != null && baseWidget != null) {
+            overlay.unregister(baseWidget.getElement());
+        }
+        if (anchor != null) {
+            anchor.removeFromParent();
+        }
+    }
+
+    /**
+     * Called by {@link TooltipRegistryConnector} when the tooltip profiles,
+     * templates or string table of the UI have changed
+     */
+    void registryChanged() {
+        if (getState().profile != null || getState().templateId != null
+                || getState().textRef >= 0 || getState().styleNamesRef >= 0) {
+            readText();
+            readProfile();
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Reads the tooltip text from the state, expanding it from the template if
+     * the tooltip uses one
+     */
+    private void readText() {
+        if (getState().templateId != null) {
+            tooltipText = TooltipRegistryConnector.expandTemplate(
+                    getConnection(), getState().templateId,
+                    getState().templateParameters);
+        } else if (getState().textRef >= 0) {
+            tooltipText = TooltipRegistryConnector.getString(getConnection(),
+                    getState().textRef);
         } else {
-            parent.removeFromParent();
-            parent = DOM.createDiv();
-            tooltip = DOM.createSpan();
-            tooltipTextSpan = DOM.createSpan();
+            tooltipText = getState().tooltipText;
+        }
+    }
+
+    /**
+     * Returns the style names of the state, resolved from the string table if
+     * the server sent them by reference
+     */
+    private List<String> readStyleNames() {
+        if (getState().styleNamesRef < 0) {
+            return getState().tooltipStylenames;
+        }
+        String joined = TooltipRegistryConnector.getString(getConnection(),
+                getState().styleNamesRef);
+        List<String> styleNames = new ArrayList<>();
+        for (String styleName : joined.split(" ")) {
+            if (!styleName.isEmpty()) {
+                styleNames.add(styleName);
+            }
+        }
+        return styleNames;
+    }
+
+    /**
+     * Reads styling from the profile the tooltip refers to, or from the state
+     * of the tooltip if it has no profile or the profile is not known
+     */
+    private void readProfile() {
+        TooltipProfileState profile = TooltipRegistryConnector
+                .getProfile(getConnection(), getState().profile);
+        if (profile != null) {
+            position = TooltipPosition.valueOf(profile.position);
+            tooltipStylenames = profile.styleNames;
+            mvmntTransitionMs = profile.positionTransDurationMs;
+            opacityTransitionMs = profile.opacityTransDurationMs;
+        } else {
+            position = TooltipPosition
+                    .valueOf(getState().tooltipPositionStyle);
+            tooltipStylenames = readStyleNames();
+            mvmntTransitionMs = getState().positionTransDurationMs;
+            opacityTransitionMs = getState().opacityTransDurationMs;
+        }
+        if (position != TooltipPosition.AUTO) {
+            placement = position;
+        } else if (measuredGeneration < 0) {
+            placement = TooltipPosition.TOP;
+        }
+    }
+
+    /**
+     * Reads the box of the widget if it is stale and the geometry AUTO
+     * placement needs. Called by {@link AutoPositioner} for all scheduled
+     * tooltips before any of them is updated.
+     */
+    private void measureLayout() {
+        if (anchorBoxStale && anchor != null
+                && anchor.getParentElement() != null) {
+            anchorBoxStale = false;
+            anchorBoxMeasured = true;
+            measureAnchorBox();
+        }
+        if (position == TooltipPosition.AUTO) {
+            measureAutoPosition();
+        }
+    }
+
+    /**
+     * Writes the measured anchor box and AUTO placement. Called by
+     * {@link AutoPositioner} after measuring.
+     */
+    private void applyLayout() {
+        if (anchorBoxMeasured) {
+            anchorBoxMeasured = false;
+            updateAnchorBox();
+        }
+        applyAutoPosition();
+    }
+
+    /**
+     * Reads the box of the widget element relative to the padding box of the
+     * anchor's offset parent, which is the containing block of the absolutely
+     * positioned anchor. The offset parent of the widget may be a different
+     * element, for example a table cell.
+     */
+    private void measureAnchorBox() {
+        Element element = baseWidget.getElement();
+        Element container = anchor.getOffsetParent();
+        boxLeft = element.getAbsoluteLeft();
+        boxTop = element.getAbsoluteTop();
+        if (container != null && container != Document.get().getBody()) {
+            boxLeft += container.getScrollLeft() - container.getAbsoluteLeft()
+                    - container.getPropertyInt("clientLeft");
+            boxTop += container.getScrollTop() - container.getAbsoluteTop()
+                    - container.getPropertyInt("clientTop");
+        }
+        boxWidth = element.getOffsetWidth();
+        boxHeight = element.getOffsetHeight();
+    }
+
+    /**
+     * Reads the geometry AUTO placement needs
+     */
+    private void measureAutoPosition() {
+        if (tooltip != null) {
+            tooltipWidth = tooltip.getOffsetWidth();
+            tooltipHeight = tooltip.getOffsetHeight();
+        }
+        if (measuredGeneration == AutoPositioner.getGeneration()) {
+            return;
+        }
+        measuredGeneration = AutoPositioner.getGeneration();
+        Element element = baseWidget.getElement();
+        targetLeft = element.getAbsoluteLeft() - Window.getScrollLeft();
+        targetTop = element.getAbsoluteTop() - Window.getScrollTop();
+        targetWidth = element.getOffsetWidth();
+        targetHeight = element.getOffsetHeight();
+    }
+
+    /**
+     * Places the tooltip on the first side of top, bottom, right and left
+     * where it fits in the viewport, or on the side with most room if it fits
+     * nowhere.
+     */
+    private void applyAutoPosition() {
+        if (position != TooltipPosition.AUTO || measuredGeneration < 0) {
+            return;
+        }
+        // Positioned by CSS, centered on the widget
+        TooltipPosition newPlacement = TooltipPosition.valueOf(
+                AutoPositioner.choosePlacement(targetLeft, targetTop,
+                        targetWidth, targetHeight, tooltipWidth,
+                        tooltipHeight, false));
+        if (newPlacement != placement) {
+            placement = newPlacement;
+            flush();
+        }
+    }
+
+    /**
+     * Called by {@link TooltipRegistryConnector} when prefetching lazily
+     * loaded texts. Returns true, and marks the text as requested, if the
+     * text has not been requested yet and the widget is in the viewport.
+     */
+    boolean prepareTextPrefetch() {
+        if (!getState().lazyText || textRequested || baseWidget == null
+                || !baseWidget.isAttached()) {
+            return false;
+        }
+        Element element = baseWidget.getElement();
+        int width = element.getOffsetWidth();
+        int height = element.getOffsetHeight();
+        if (width == 0 && height == 0) {
+            return false;
+        }
+        int left = element.getAbsoluteLeft() - Window.getScrollLeft();
+        int top = element.getAbsoluteTop() - Window.getScrollTop();
+        if (left + width < 0 || top + height < 0
+                || left > Window.getClientWidth()
+                || top > Window.getClientHeight()) {
+            return false;
+        }
+        textRequested = true;
+        return true;
+    }
+
+    private void onShowIntent() {
+        boolean entered = !showIntent;
+        showIntent = true;
+        if (!isDelayed()) {
+            startUsage();
+        }
+        if (getState().lazyText && !textRequested) {
+            textRequested = true;
+            rpc.requestTooltipText();
+        }
+        if (overlay == null && baseWidget.isAttached()) {
+            if (tooltip == null) {
+                addTooltip();
+            }
+            if (entered) {
+                // Measured in the next frame, not on every mouseover
+                scheduleAnchorBox();
+            }
+        }
+        if (position == TooltipPosition.AUTO && overlay == null) {
+            AutoPositioner.schedule(autoLayout);
+        }
+    }
+
+    /**
+     * True if the tooltip is shown by the delay timers instead of the CSS
+     * :hover rules. Tooltips in the shared overlay handle delays there,
+     * except content tooltips, whose content is shown by the timers so that
+     * the server only creates it for tooltips that are actually shown.
+     */
+    private boolean isDelayed() {
+        return getState().contentTooltip
+                || overlay == null && (showDelayMs > 0 || hideDelayMs > 0);
+    }
+
+    private int getShowDelayMs() {
+        if (getState().contentTooltip) {
+            return Math.max(showDelayMs, CONTENT_SHOW_DELAY_MS);
+        }
+        return showDelayMs;
+    }
+
+    private void onHideIntent() {
+        showIntent = false;
+        if (!isDelayed()) {
+            endUsage();
+            return;
+        }
+        showTimer.cancel();
+        if (shown) {
+            hideTimer.schedule(Math.max(1, hideDelayMs));
+        }
+    }
+
+    private void showTooltip() {
+        TooltipExtensionConnector shownTooltip = shownTooltips
+                .get(getConnection());
+        if (shownTooltip != null && shownTooltip != this) {
+            shownTooltip.hideTooltip(true);
+        }
+        shownTooltips.put(getConnection(), this);
+        shown = true;
+        startUsage();
+        if (getState().contentTooltip && !contentShown) {
+            // The content is shown by the server below the widget
+            contentShown = true;
+            Element element = baseWidget.getElement();
+            rpc.contentShown(element.getAbsoluteLeft(),
+                    element.getAbsoluteTop() + element.getOffsetHeight());
+        }
+        if (anchor != null) {
+            anchor.removeClassName("customTooltipInstant");
+            anchor.addClassName("customTooltipShown");
+        }
+    }
+
+    private void clearShownTooltip() {
+        if (shownTooltips.get(getConnection()) == this) {
+            shownTooltips.remove(getConnection());
+        }
+    }
+
+    private void onFocusIn() {
+        onShowIntent();
+        if (isDelayed()) {
+            hideTimer.cancel();
+            showTimer.schedule(getShowDelayMs());
+        }
+    }
+
+    /**
+     * Called when focus leaves an element of the widget, related is the
+     * element taking focus or null
+     */
+    private void onFocusOut(Element related) {
+        if (related == null
+                || !baseWidget.getElement().isOrHasChild(related)) {
+            onHideIntent();
+        }
+    }
+
+    private native void addFocusListeners(Element element)
+    /*-{
+        var self = this;
+        var focusIn = $entry(function() {
+            self.@org.vaadin.addons.TooltipExtension.client.TooltipExtensionConnector::onFocusIn()();
+        });
+        var focusOut = $entry(function(e) {
+            var related = e.relatedTarget && e.relatedTarget.nodeType == 1 ? e.relatedTarget : null;
+            self.@org.vaadin.addons.TooltipExtension.client.TooltipExtensionConnector::onFocusOut(Lcom/google/gwt/dom/client/Element;)(related);
+        });
+        element.addEventListener('focusin', focusIn, false);
+        element.addEventListener('focusout', focusOut, false);
+        this.@org.vaadin.addons.TooltipExtension.client.TooltipExtensionConnector::focusInListener = focusIn;
+        this.@org.vaadin.addons.TooltipExtension.client.TooltipExtensionConnector::focusOutListener = focusOut;
+    }-*/;
+
+    private native void removeFocusListeners(Element element)
+    /*-{
+        var focusIn = this.@org.vaadin.addons.TooltipExtension.client.TooltipExtensionConnector::focusInListener;
+        var focusOut = this.@org.vaadin.addons.TooltipExtension.client.TooltipExtensionConnector::focusOutListener;
+        if (focusIn) {
+            element.removeEventListener('focusin', focusIn, false);
+            element.removeEventListener('focusout', focusOut, false);
+        }
+        this.@org.vaadin.addons.TooltipExtension.client.TooltipExtensionConnector::focusInListener = null;
+        this.@org.vaadin.addons.TooltipExtension.client.TooltipExtensionConnector::focusOutListener = null;
+    }-*/;
+
+    /**
+     * Hides the tooltip, without transition if instant is true, which is used
+     * when another tooltip is shown so that only one tooltip animates
+     */
+    private void hideTooltip(boolean instant) {
+        showTimer.cancel();
+        hideTimer.cancel();
+        clearShownTooltip();
+        shown = false;
+        endUsage();
+        if (contentShown) {
+            contentShown = false;
+            rpc.contentHidden();
+        }
+        if (anchor == null) {
+            return;
+        }
+        if (instant) {
+            anchor.addClassName("customTooltipInstant");
+        }
+        anchor.removeClassName("customTooltipShown");
+    }
+
+    /**
+     * Starts counting a show of the tooltip if usage is sampled and the
+     * tooltip has an id to report it by
+     */
+    private void startUsage() {
+        if (usageActive || id == null) {
+            return;
+        }
+        usageActive = true;
+        if (TooltipRegistryConnector.sampleUsage(getConnection())) {
+            usageShownAt = Duration.currentTimeMillis();
+        }
+    }
+
+    private void endUsage() {
+        if (!usageActive) {
+            return;
+        }
+        usageActive = false;
+        if (usageShownAt >= 0) {
+            TooltipRegistryConnector.recordUsage(getConnection(), id,
+                    (int) (Duration.currentTimeMillis() - usageShownAt));
+            usageShownAt = -1;
+        }
+    }
+
+    private void handleAttach() {
+        if (anchor != null) {
+            insertAnchor();
+            rebuildsAvoided++;
+        } else if (!getState().lazyRendering) {
             addTooltip();
-            manualAttach = true;
-            originalParent.replaceChild(parent, baseWidget.getElement());
-            parent.appendChild(baseWidget.getElement());
-            manualAttach = false;
         }
-        originalParent = parent.getParentElement();
     }
 
-    private void addTooltip() {
-        tooltipTextSpan.setInnerHTML(tooltipText);
-        tooltipTextSpan.addClassName("customTooltipText");
-        if (id != null && !id.trim().isEmpty()) {
-            tooltip.setId(id);
+    private void handleDetach() {
+        hideTooltip(false);
+        if (anchor != null) {
+            anchor.removeFromParent();
+        }
+    }
+
+    /**
+     * Inserts the anchor as the next sibling of the widget element unless it
+     * already is
+     */
+    private void insertAnchor() {
+        Element element = baseWidget.getElement();
+        Element parent = element.getParentElement();
+        if (parent != null && element.getNextSibling() != anchor) {
+            parent.insertAfter(anchor, element);
+            // The box of the widget may differ in its new place
+            anchorWidth = -1;
+            scheduleAnchorBox();
         }
-        if (!tooltip.isOrHasChild(tooltipTextSpan)) {
+    }
+
+    /**
+     * Measures the box of the widget and gives it to the anchor in the next
+     * frame, together with the other tooltips updated in it
+     */
+    private void scheduleAnchorBox() {
+        anchorBoxStale = true;
+        AutoPositioner.schedule(autoLayout);
+    }
+
+    /**
+     * Gives the anchor the box measured by measureAnchorBox(). The anchor is
+     * only written if the box has changed.
+     */
+    private void updateAnchorBox() {
+        int left = boxLeft;
+        int top = boxTop;
+        int width = boxWidth;
+        int height = boxHeight;
+        if (left != anchorLeft || top != anchorTop || width != anchorWidth
+                || height != anchorHeight) {
+            anchorLeft = left;
+            anchorTop = top;
+            anchorWidth = width;
+            anchorHeight = height;
+            anchor.getStyle().setProperty("left", left + "px");
+            anchor.getStyle().setProperty("top", top + "px");
+            anchor.getStyle().setProperty("width", width + "px");
+            anchor.getStyle().setProperty("height", height + "px");
+        }
+        anchor.removeClassName("customTooltipUnsized");
+    }
+
+    /**
+     * Creates the tooltip elements if necessary and inserts them next to the
+     * widget element
+     */
+    private void addTooltip() {
+        if (anchor == null) {
+            anchor = DOM.createSpan();
+            anchor.setClassName("customTooltipAnchor customTooltipUnsized");
+            tooltip = DOM.createSpan();
+            tooltipTextSpan = DOM.createSpan();
+            tooltipTextSpan.setClassName("customTooltipText");
+            tooltipTextSpan.setAttribute("role", "tooltip");
             tooltip.appendChild(tooltipTextSpan);
+            anchor.appendChild(tooltip);
+            appliedText = null;
+            appliedId = null;
+            appliedClassName = null;
+            appliedTransition = null;
+            appliedDelayed = false;
         }
-        for (TooltipPosition t : TooltipPosition.values()) {
-            tooltip.removeClassName(t.styleName);
+        insertAnchor();
+        flush();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Scheduler.get().scheduleFinally(flushCommand);
         }
-        tooltipTextSpan.setAttribute("role", "tooltip");
+    }
 
-        if (!parent.isOrHasChild(tooltip)) {
-            parent.appendChild(tooltip);
+    /**
+     * Writes the current tooltip properties to the tooltip elements, or to the
+     * shared overlay if the tooltip uses it
+     */
+    private void flush() {
+        if (getState().textRef >= 0 || getState().styleNamesRef >= 0) {
+            // The strings arrive with the same response, possibly after the
+            // state change event
+            readText();
+            readProfile();
+        }
+        if (overlay != null) {
+            overlay.refresh(overlayTarget);
+            return;
+        }
+        if (tooltip == null) {
+            // Not rendered yet, addTooltip() writes everything when it is
+            return;
+        }
+        if (isDelayed() != appliedDelayed) {
+            appliedDelayed = isDelayed();
+            if (appliedDelayed) {
+                anchor.addClassName("customTooltipDelayed");
+            } else {
+                hideTooltip(false);
+                anchor.removeClassName("customTooltipDelayed");
+            }
+        }
+        if (!tooltipText.equals(appliedText)) {
+            tooltipTextSpan.setInnerHTML(tooltipText);
+            appliedText = tooltipText;
+        }
+        String tooltipId = id == null ? "" : id;
+        if (!tooltipId.equals(appliedId)) {
+            tooltip.setId(tooltipId);
+            appliedId = tooltipId;
         }
-        parent.addClassName("v-widget customTooltipWidget");
         updateStyles();
         setDelays();
     }
 
     private void updateStyles() {
-        String[] l = tooltip.getClassName().split(" ");
-        for (int i = 0; i < l.length; i++) {
-            tooltip.removeClassName(l[i]);
-        }
-
-        tooltip.addClassName("customTooltip");
-        tooltip.addClassName(position.styleName);
+        StringBuilder className = new StringBuilder("customTooltip ")
+                .append(placement.styleName);
         for (String style : tooltipStylenames) {
-            tooltip.addClassName(style);
+            className.append(' ').append(style);
+        }
+        if (getState().textPending) {
+            className.append(" customTooltipPending");
+        }
+        if (!className.toString().equals(appliedClassName)) {
+            appliedClassName = className.toString();
+            tooltip.setClassName(appliedClassName);
         }
     }
 
     private void setDelays() {
-        String transition = position.position + " " + mvmntTransitionMs
+        String transition = placement.position + " " + mvmntTransitionMs
                 + "ms, opacity " + opacityTransitionMs + "ms ease-in";
+        if (transition.equals(appliedTransition)) {
+            return;
+        }
+        appliedTransition = transition;
 
         tooltip.getStyle().setProperty("-webkit-transition", transition);
         tooltip.getStyle().setProperty("-ms-transition", transition);
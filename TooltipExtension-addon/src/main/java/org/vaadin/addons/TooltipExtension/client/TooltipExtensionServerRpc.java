@@ -4,4 +4,25 @@ import com.vaadin.shared.communication.ServerRpc;
 
 public interface TooltipExtensionServerRpc extends ServerRpc {
 
+    /**
+     * Requests the tooltip text of a lazily loaded tooltip. Called by the
+     * client the first time the tooltip is shown.
+     */
+    void requestTooltipText();
+
+    /**
+     * Reports that a content tooltip is shown, so that the server shows its
+     * content component at the given position in the page
+     *
+     * @param left
+     *            int left edge of the content in pixels
+     * @param top
+     *            int top edge of the content in pixels
+     */
+    void contentShown(int left, int top);
+
+    /**
+     * Reports that a content tooltip is hidden
+     */
+    void contentHidden();
 }
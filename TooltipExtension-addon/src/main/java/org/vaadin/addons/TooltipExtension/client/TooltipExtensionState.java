@@ -2,12 +2,72 @@ package org.vaadin.addons.TooltipExtension.client;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
-public class TooltipExtensionState
-        extends com.vaadin.shared.AbstractComponentState {
+import com.vaadin.shared.communication.SharedState;
+
+public class TooltipExtensionState extends SharedState {
+    /**
+     * Id of the tooltip element, or null if not set.
+     */
+    public String id = null;
     public List<String> tooltipStylenames = new ArrayList<>();
     public String tooltipText = "";
+    /**
+     * Index of the tooltip text in the string table of the tooltip registry,
+     * or -1 if tooltipText is used. The server sends the index instead of
+     * tooltipText whenever it can.
+     */
+    public int textRef = -1;
+    /**
+     * Index of the space separated style names in the string table of the
+     * tooltip registry, or -1 if tooltipStylenames is used.
+     */
+    public int styleNamesRef = -1;
     public String tooltipPositionStyle = "RIGHT";
     public int positionTransDurationMs = 250;
     public int opacityTransDurationMs = 250;
-}
\ No newline at end of file
+    /**
+     * Delay in milliseconds before the tooltip is shown once the pointer
+     * rests on the target, and before it is hidden once the pointer leaves.
+     * With both zero the tooltip is shown by CSS :hover alone.
+     */
+    public int showDelayMs = 0;
+    public int hideDelayMs = 0;
+    /**
+     * True if tooltipText has not been loaded yet and must be requested from
+     * the server when the tooltip is shown.
+     */
+    public boolean lazyText = false;
+    /**
+     * True if tooltipText is a placeholder shown while the text is loaded
+     * asynchronously on the server.
+     */
+    public boolean textPending = false;
+    /**
+     * True if the tooltip shows a content component created on the server
+     * when the tooltip is shown, instead of a text.
+     */
+    public boolean contentTooltip = false;
+    /**
+     * True if the tooltip is shown in the single overlay element shared by all
+     * tooltips of the UI instead of a tooltip element of its own.
+     */
+    public boolean sharedOverlay = false;
+    /**
+     * Name of the tooltip profile styling this tooltip, or null if the tooltip
+     * is styled by the fields of this state.
+     */
+    public String profile = null;
+    /**
+     * True if the tooltip elements are created only when the target is
+     * hovered or focused for the first time.
+     */
+    public boolean lazyRendering = false;
+    /**
+     * Id of the template registered in the tooltip registry of the UI that
+     * the tooltip text is expanded from, or null if tooltipText is used.
+     */
+    public String templateId = null;
+    public Map<String, String> templateParameters = null;
+}
@@ -0,0 +1,374 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.DOM;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.Window;
+import com.vaadin.client.ApplicationConnection;
+
+/**
+ * A single floating tooltip element shared by all tooltips of a UI that use
+ * the shared overlay mode. Instead of building a tooltip DOM tree for every
+ * extended widget, the overlay listens to mouseover and focus events on the
+ * document and fills its one tooltip element for the registered element under
+ * the event target. The content is written when a tooltip is shown, the
+ * tooltip is placed in the next animation frame through
+ * {@link AutoPositioner}, after its new size has been measured.
+ */
+public class TooltipOverlay {
+
+    /**
+     * Provides the tooltip content and configuration for a registered element
+     */
+    public interface Target {
+
+        /**
+         * Returns the element the tooltip for the hovered or focused element
+         * is positioned against, or null if there is no tooltip for it. The
+         * hovered element is the registered element or one of its
+         * descendants.
+         */
+        Element getAnchor(Element hovered);
+
+        String getTooltipHtml(Element anchor);
+
+        String getTooltipId();
+
+        String getPosition();
+
+        List<String> getStyleNames();
+
+        int getOpacityTransitionMs();
+
+        /**
+         * Returns the delay in milliseconds before the tooltip is shown
+         */
+        int getShowDelayMs();
+
+        /**
+         * Returns the delay in milliseconds before the tooltip is hidden
+         */
+        int getHideDelayMs();
+    }
+
+    private static final String TARGET_ATTRIBUTE = "data-tooltip-target";
+    private static final String VISIBLE_STYLE = "customTooltipVisible";
+
+    private static Map<ApplicationConnection, TooltipOverlay> overlays = new HashMap<>();
+    private static int nextKey = 0;
+
+    private Map<String, Target> targets = new HashMap<>();
+    private Element tooltip = DOM.createSpan();
+    private Element tooltipTextSpan = DOM.createSpan();
+    private Element currentAnchor;
+    private Target currentTarget;
+    private Element pendingAnchor;
+    private Target pendingTarget;
+    private Timer showTimer = new Timer() {
+
+        @Override
+        public void run() {
+            show(pendingAnchor, pendingTarget);
+        }
+    };
+    private Timer hideTimer = new Timer() {
+
+        @Override
+        public void run() {
+            hide();
+        }
+    };
+    private AutoPositioner.Layout layout = new AutoPositioner.Layout() {
+
+        @Override
+        public void measureLayout() {
+            measure();
+        }
+
+        @Override
+        public void applyLayout() {
+            place();
+        }
+    };
+    /*
+     * Geometry read by measure(). The anchor box, in page coordinates, is
+     * reused for the same anchor until AutoPositioner invalidates it.
+     */
+    private Element measuredAnchor;
+    private int measuredGeneration = -1;
+    private int anchorLeft;
+    private int anchorTop;
+    private int anchorWidth;
+    private int anchorHeight;
+    private int scrollLeft;
+    private int scrollTop;
+    private int tooltipWidth;
+    private int tooltipHeight;
+    private String placement = "RIGHT";
+    private boolean visible = false;
+
+    private TooltipOverlay() {
+        tooltipTextSpan.addClassName("customTooltipText");
+        tooltipTextSpan.setAttribute("role", "tooltip");
+        tooltip.appendChild(tooltipTextSpan);
+        tooltip.setClassName("customTooltip customTooltipOverlay");
+        Document.get().getBody().appendChild(tooltip);
+        addListeners();
+    }
+
+    /**
+     * Returns the overlay of the UI of the given connection, creating it if
+     * necessary
+     *
+     * @param connection
+     *            ApplicationConnection of the UI
+     * @return TooltipOverlay
+     */
+    public static TooltipOverlay get(ApplicationConnection connection) {
+        TooltipOverlay overlay = overlays.get(connection);
+        if (overlay == null) {
+            overlay = new TooltipOverlay();
+            overlays.put(connection, overlay);
+        }
+        return overlay;
+    }
+
+    /**
+     * Shows the tooltip of the target when the element or any of its
+     * descendants is hovered or focused
+     *
+     * @param element
+     *            Element
+     * @param target
+     *            Target
+     */
+    public void register(Element element, Target target) {
+        String key = element.getAttribute(TARGET_ATTRIBUTE);
+        if (key == null || key.isEmpty()) {
+            key = String.valueOf(nextKey++);
+            element.setAttribute(TARGET_ATTRIBUTE, key);
+        }
+        targets.put(key, target);
+    }
+
+    public void unregister(Element element) {
+        targets.remove(element.getAttribute(TARGET_ATTRIBUTE));
+        element.removeAttribute(TARGET_ATTRIBUTE);
+        if ((currentAnchor != null && element.isOrHasChild(currentAnchor))
+                || (pendingAnchor != null
+                        && element.isOrHasChild(pendingAnchor))) {
+            hide();
+        }
+    }
+
+    /**
+     * Updates the overlay content if it is currently showing the tooltip of the
+     * given target
+     *
+     * @param target
+     *            Target
+     */
+    public void refresh(Target target) {
+        if (target == currentTarget) {
+            show(currentAnchor, currentTarget);
+        }
+    }
+
+    private void onOver(Element hovered) {
+        Element element = hovered;
+        while (element != null && !element.hasAttribute(TARGET_ATTRIBUTE)) {
+            element = element.getParentElement();
+        }
+        if (element == null) {
+            return;
+        }
+        Target target = targets.get(element.getAttribute(TARGET_ATTRIBUTE));
+        Element anchor = target == null ? null : target.getAnchor(hovered);
+        if (anchor == null) {
+            showTimer.cancel();
+            if (currentAnchor != null) {
+                scheduleHide();
+            }
+        } else if (anchor == currentAnchor) {
+            hideTimer.cancel();
+        } else if (anchor != pendingAnchor) {
+            hideTimer.cancel();
+            pendingAnchor = anchor;
+            pendingTarget = target;
+            // Moving from a shown tooltip to the next one skips the delay
+            if (currentAnchor != null || target.getShowDelayMs() <= 0) {
+                showTimer.cancel();
+                show(anchor, target);
+            } else {
+                showTimer.schedule(target.getShowDelayMs());
+            }
+        }
+    }
+
+    private void onOut(Element element) {
+        if (pendingAnchor != null && pendingAnchor != currentAnchor
+                && (element == null || !pendingAnchor.isOrHasChild(element))) {
+            showTimer.cancel();
+            pendingAnchor = null;
+            pendingTarget = null;
+        }
+        if (currentAnchor != null
+                && (element == null || !currentAnchor.isOrHasChild(element))) {
+            scheduleHide();
+        }
+    }
+
+    private void scheduleHide() {
+        if (currentTarget.getHideDelayMs() > 0) {
+            hideTimer.schedule(currentTarget.getHideDelayMs());
+        } else {
+            hide();
+        }
+    }
+
+    /**
+     * Writes the content of the tooltip and places it in the next animation
+     * frame
+     */
+    private void show(Element anchor, Target target) {
+        pendingAnchor = anchor;
+        pendingTarget = target;
+        currentAnchor = anchor;
+        currentTarget = target;
+
+        tooltipTextSpan.setInnerHTML(target.getTooltipHtml(anchor));
+        String id = target.getTooltipId();
+        tooltip.setId(id == null ? "" : id);
+        tooltip.getStyle().setProperty("transition",
+                "opacity " + target.getOpacityTransitionMs() + "ms ease-in");
+        // Keeps the current placement and visibility until placed
+        writeClassName();
+        AutoPositioner.schedule(layout);
+    }
+
+    /**
+     * Reads the size of the tooltip with its new content and the anchor box
+     */
+    private void measure() {
+        if (currentAnchor == null) {
+            return;
+        }
+        if (measuredAnchor != currentAnchor
+                || measuredGeneration != AutoPositioner.getGeneration()) {
+            measuredAnchor = currentAnchor;
+            measuredGeneration = AutoPositioner.getGeneration();
+            anchorLeft = currentAnchor.getAbsoluteLeft();
+            anchorTop = currentAnchor.getAbsoluteTop();
+            anchorWidth = currentAnchor.getOffsetWidth();
+            anchorHeight = currentAnchor.getOffsetHeight();
+            scrollLeft = Window.getScrollLeft();
+            scrollTop = Window.getScrollTop();
+        }
+        tooltipWidth = tooltip.getOffsetWidth();
+        tooltipHeight = tooltip.getOffsetHeight();
+    }
+
+    /**
+     * Places the tooltip from the measured geometry and makes it visible. The
+     * AUTO position takes the first side where the tooltip fits in the
+     * viewport, and moves the tooltip along that side to keep it inside the
+     * viewport.
+     */
+    private void place() {
+        if (currentAnchor == null || measuredAnchor != currentAnchor) {
+            return;
+        }
+        placement = currentTarget.getPosition();
+        boolean auto = "AUTO".equals(placement);
+        if (auto) {
+            placement = AutoPositioner.choosePlacement(anchorLeft - scrollLeft,
+                    anchorTop - scrollTop, anchorWidth, anchorHeight,
+                    tooltipWidth, tooltipHeight, true);
+        }
+        int left = anchorLeft;
+        int top = anchorTop;
+        boolean vertical = "TOP".equals(placement)
+                || "BOTTOM".equals(placement);
+        if (vertical) {
+            left += anchorWidth / 2;
+        } else if ("RIGHT".equals(placement)) {
+            left += anchorWidth;
+        }
+        if (!vertical) {
+            top += anchorHeight / 2;
+        } else if ("BOTTOM".equals(placement)) {
+            top += anchorHeight;
+        }
+        if (auto && vertical) {
+            left = keepInViewport(left, tooltipWidth, scrollLeft,
+                    AutoPositioner.getViewportWidth());
+        } else if (auto) {
+            top = keepInViewport(top, tooltipHeight, scrollTop,
+                    AutoPositioner.getViewportHeight());
+        }
+
+        visible = true;
+        tooltip.getStyle().setProperty("left", left + "px");
+        tooltip.getStyle().setProperty("top", top + "px");
+        writeClassName();
+    }
+
+    /**
+     * Moves the center of a tooltip of the given size so that the tooltip is
+     * inside the viewport, or starts at its edge if it does not fit
+     */
+    private static int keepInViewport(int center, int size, int scroll,
+            int viewportSize) {
+        int min = scroll + AutoPositioner.MARGIN + size / 2;
+        int max = scroll + viewportSize - AutoPositioner.MARGIN - size / 2;
+        return Math.max(min, Math.min(max, center));
+    }
+
+    private void writeClassName() {
+        StringBuilder className = new StringBuilder(
+                "customTooltip customTooltipOverlay customTooltipOverlay");
+        className.append(placement.charAt(0))
+                .append(placement.substring(1).toLowerCase());
+        if (currentTarget != null) {
+            for (String style : currentTarget.getStyleNames()) {
+                className.append(' ').append(style);
+            }
+        }
+        if (visible) {
+            className.append(' ').append(VISIBLE_STYLE);
+        }
+        tooltip.setClassName(className.toString());
+    }
+
+    private void hide() {
+        showTimer.cancel();
+        hideTimer.cancel();
+        currentAnchor = null;
+        currentTarget = null;
+        pendingAnchor = null;
+        pendingTarget = null;
+        AutoPositioner.cancel(layout);
+        visible = false;
+        tooltip.removeClassName(VISIBLE_STYLE);
+    }
+
+    private native void addListeners()
+    /*-{
+        var self = this;
+        var over = $entry(function(e) {
+            self.@org.vaadin.addons.TooltipExtension.client.TooltipOverlay::onOver(Lcom/google/gwt/dom/client/Element;)(e.target);
+        });
+        var out = $entry(function(e) {
+            self.@org.vaadin.addons.TooltipExtension.client.TooltipOverlay::onOut(Lcom/google/gwt/dom/client/Element;)(e.relatedTarget);
+        });
+        $doc.addEventListener('mouseover', over, false);
+        $doc.addEventListener('focusin', over, false);
+        $doc.addEventListener('mouseout', out, false);
+        $doc.addEventListener('focusout', out, false);
+    }-*/;
+}
@@ -0,0 +1,16 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Styling of a named tooltip profile, shared by all tooltips of the UI that
+ * refer to the profile
+ */
+public class TooltipProfileState implements Serializable {
+    public List<String> styleNames = new ArrayList<>();
+    public String position = "RIGHT";
+    public int positionTransDurationMs = 250;
+    public int opacityTransDurationMs = 250;
+}
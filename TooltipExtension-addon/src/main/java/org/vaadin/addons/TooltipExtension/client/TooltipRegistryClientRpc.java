@@ -0,0 +1,31 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.List;
+
+import com.vaadin.shared.communication.ClientRpc;
+
+public interface TooltipRegistryClientRpc extends ClientRpc {
+
+    /**
+     * Sets strings of the string table of the UI, starting at the given
+     * index. Tooltip states refer to the table by index instead of carrying
+     * their texts and style names.
+     *
+     * @param startIndex
+     *            int index of the first string
+     * @param strings
+     *            List<String> strings
+     */
+    void setStrings(int startIndex, List<String> strings);
+
+    /**
+     * Asks the client to call
+     * {@link TooltipRegistryServerRpc#releaseIdleContents()} after the delay,
+     * when the next hidden content tooltip becomes idle. Replaces an earlier
+     * scheduled call.
+     *
+     * @param delayMs
+     *            int delay in milliseconds
+     */
+    void scheduleContentRelease(int delayMs);
+}
@@ -0,0 +1,405 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.vaadin.addons.TooltipExtension.TooltipRegistry;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.safehtml.shared.SafeHtmlUtils;
+import com.google.gwt.user.client.Timer;
+import com.vaadin.client.ApplicationConnection;
+import com.vaadin.client.ServerConnector;
+import com.vaadin.client.communication.RpcProxy;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.client.extensions.AbstractExtensionConnector;
+import com.vaadin.shared.ui.Connect;
+import com.vaadin.shared.ApplicationConstants;
+import com.vaadin.shared.ui.Connect.LoadStyle;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+
+@Connect(value = TooltipRegistry.class, loadStyle = LoadStyle.LAZY)
+public class TooltipRegistryConnector extends AbstractExtensionConnector {
+
+    private static Map<ApplicationConnection, TooltipRegistryConnector> registries = new HashMap<>();
+
+    private boolean prefetchScheduled = false;
+    // Document and window listeners, removed when unregistered
+    private JavaScriptObject scrollListener;
+    private JavaScriptObject unloadListener;
+    private List<String> strings = new ArrayList<>();
+    /*
+     * Sampled tooltip usage by tooltip id, collected until the next report
+     */
+    private Map<String, Integer> usageShows = new HashMap<>();
+    private Map<String, Integer> usageDwellMs = new HashMap<>();
+    private Timer contentReleaseTimer = new Timer() {
+
+        @Override
+        public void run() {
+            rpc.releaseIdleContents();
+        }
+    };
+    private Timer usageTimer = new Timer() {
+
+        @Override
+        public void run() {
+            flushUsage();
+        }
+    };
+
+    TooltipRegistryServerRpc rpc = RpcProxy
+            .create(TooltipRegistryServerRpc.class, this);
+
+    public TooltipRegistryConnector() {
+        registerRpc(TooltipRegistryClientRpc.class,
+                new TooltipRegistryClientRpc() {
+
+                    @Override
+                    public void setStrings(int startIndex,
+                            List<String> values) {
+                        if (startIndex == 0) {
+                            // A new table, sent after a refresh or a reset
+                            strings.clear();
+                        }
+                        for (int i = 0; i < values.size(); i++) {
+                            int index = startIndex + i;
+                            while (strings.size() <= index) {
+                                strings.add("");
+                            }
+                            strings.set(index, values.get(i));
+                        }
+                        if (startIndex == 0) {
+                            notifyTooltips();
+                        }
+                    }
+
+                    @Override
+                    public void scheduleContentRelease(int delayMs) {
+                        contentReleaseTimer.schedule(Math.max(0, delayMs));
+                    }
+                });
+    }
+
+    /**
+     * Returns the string at the index in the string table of the UI of the
+     * connection, or an empty String if there is no such string
+     *
+     * @param connection
+     *            ApplicationConnection of the UI
+     * @param index
+     *            int index in the string table
+     * @return String
+     */
+    public static String getString(ApplicationConnection connection,
+            int index) {
+        TooltipRegistryConnector registry = registries.get(connection);
+        if (registry == null || index < 0
+                || index >= registry.strings.size()) {
+            return "";
+        }
+        return registry.strings.get(index);
+    }
+
+    /**
+     * Returns the tooltip profile with the given name registered for the UI
+     * of the connection, or null if there is no such profile
+     *
+     * @param connection
+     *            ApplicationConnection of the UI
+     * @param name
+     *            String name of the profile, may be null
+     * @return TooltipProfileState or null
+     */
+    public static TooltipProfileState getProfile(
+            ApplicationConnection connection, String name) {
+        TooltipRegistryConnector registry = registries.get(connection);
+        if (name == null || registry == null) {
+            return null;
+        }
+        return registry.getState().profiles.get(name);
+    }
+
+    /**
+     * Returns the text of the template with the given id registered for the
+     * UI of the connection, with parameters in braces replaced by their HTML
+     * escaped values. Parameters without a value are left as is. Returns an
+     * empty String if there is no such template.
+     *
+     * @param connection
+     *            ApplicationConnection of the UI
+     * @param templateId
+     *            String id of the template
+     * @param parameters
+     *            Map<String, String> parameter values, may be null
+     * @return String
+     */
+    public static String expandTemplate(ApplicationConnection connection,
+            String templateId, Map<String, String> parameters) {
+        TooltipRegistryConnector registry = registries.get(connection);
+        String template = registry == null ? null
+                : registry.getState().templates.get(templateId);
+        if (template == null) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            int start = template.indexOf('{', i);
+            int end = start < 0 ? -1 : template.indexOf('}', start);
+            if (end < 0) {
+                text.append(template.substring(i));
+                break;
+            }
+            text.append(template.substring(i, start));
+            String value = parameters == null ? null
+                    : parameters.get(template.substring(start + 1, end));
+            if (value == null) {
+                text.append(template.substring(start, end + 1));
+            } else {
+                text.append(SafeHtmlUtils.htmlEscape(value));
+            }
+            i = end + 1;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Schedules fetching the texts of the lazily loaded tooltips in the
+     * viewport of the UI of the connection when the browser is idle
+     *
+     * @param connection
+     *            ApplicationConnection of the UI
+     */
+    public static void schedulePrefetch(ApplicationConnection connection) {
+        TooltipRegistryConnector registry = registries.get(connection);
+        if (registry != null) {
+            registry.schedulePrefetch();
+        }
+    }
+
+    /**
+     * Decides whether a tooltip show in the UI of the connection is counted,
+     * by the usage sample rate of the registry
+     *
+     * @param connection
+     *            ApplicationConnection of the UI
+     * @return true if the show should be recorded with
+     *         {@link #recordUsage(ApplicationConnection, String, int)}
+     */
+    public static boolean sampleUsage(ApplicationConnection connection) {
+        TooltipRegistryConnector registry = registries.get(connection);
+        return registry != null
+                && Math.random() < registry.getState().usageSampleRate;
+    }
+
+    /**
+     * Counts a sampled show of the tooltip with the id. The counts are sent
+     * to the server in one call at the usage flush interval.
+     *
+     * @param connection
+     *            ApplicationConnection of the UI
+     * @param tooltipId
+     *            String id of the tooltip
+     * @param dwellMs
+     *            int time in milliseconds the tooltip was visible
+     */
+    public static void recordUsage(ApplicationConnection connection,
+            String tooltipId, int dwellMs) {
+        TooltipRegistryConnector registry = registries.get(connection);
+        if (registry != null) {
+            registry.recordUsage(tooltipId, dwellMs);
+        }
+    }
+
+    @Override
+    public TooltipRegistryState getState() {
+        return (TooltipRegistryState) super.getState();
+    }
+
+    @Override
+    protected void extend(ServerConnector target) {
+        registries.put(getConnection(), this);
+        addListeners();
+        schedulePrefetch();
+    }
+
+    @Override
+    public void onUnregister() {
+        super.onUnregister();
+        removeListeners();
+        usageTimer.cancel();
+        contentReleaseTimer.cancel();
+        flushUsage();
+        if (registries.get(getConnection()) == this) {
+            registries.remove(getConnection());
+        }
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent event) {
+        super.onStateChanged(event);
+        if (event.hasPropertyChanged("profiles")
+                || event.hasPropertyChanged("templates")) {
+            notifyTooltips();
+        }
+    }
+
+    private void notifyTooltips() {
+        for (ServerConnector connector : getConnection().getConnectorMap()
+                .getConnectors()) {
+            if (connector instanceof TooltipExtensionConnector) {
+                ((TooltipExtensionConnector) connector).registryChanged();
+            }
+        }
+    }
+
+    private void schedulePrefetch() {
+        if (!prefetchScheduled) {
+            prefetchScheduled = true;
+            requestIdle();
+        }
+    }
+
+    /**
+     * Requests the texts of all lazily loaded tooltips in the viewport that
+     * have not been requested yet in one server call
+     */
+    private void prefetch() {
+        prefetchScheduled = false;
+        if (registries.get(getConnection()) != this) {
+            return;
+        }
+        List<String> connectorIds = new ArrayList<>();
+        for (ServerConnector connector : getConnection().getConnectorMap()
+                .getConnectors()) {
+            if (connector instanceof TooltipExtensionConnector
+                    && ((TooltipExtensionConnector) connector)
+                            .prepareTextPrefetch()) {
+                connectorIds.add(connector.getConnectorId());
+            }
+        }
+        if (!connectorIds.isEmpty()) {
+            rpc.requestTooltipTexts(connectorIds);
+        }
+    }
+
+    private void recordUsage(String tooltipId, int dwellMs) {
+        Integer shows = usageShows.get(tooltipId);
+        Integer dwell = usageDwellMs.get(tooltipId);
+        usageShows.put(tooltipId, shows == null ? 1 : shows + 1);
+        usageDwellMs.put(tooltipId, dwell == null ? dwellMs : dwell + dwellMs);
+        if (!usageTimer.isRunning()) {
+            usageTimer.schedule(getState().usageFlushIntervalMs);
+        }
+    }
+
+    /**
+     * Sends the usage collected since the previous report in one server call
+     */
+    private void flushUsage() {
+        if (usageShows.isEmpty()) {
+            return;
+        }
+        rpc.reportTooltipUsage(usageShows, usageDwellMs);
+        usageShows = new HashMap<>();
+        usageDwellMs = new HashMap<>();
+    }
+
+    /**
+     * Sends the usage collected since the previous report with
+     * navigator.sendBeacon, as the browser cancels a regular server call
+     * when the page is unloaded. Falls back to a server call when the browser
+     * does not queue the beacon.
+     */
+    private void flushUsageOnUnload() {
+        if (usageShows.isEmpty()) {
+            return;
+        }
+        JsonObject beacon = Json.createObject();
+        beacon.put("ui", getConnection().getConfiguration().getUIId());
+        beacon.put("csrf", getConnection().getMessageHandler().getCsrfToken());
+        beacon.put("shows", toJson(usageShows));
+        beacon.put("dwellMs", toJson(usageDwellMs));
+        String url = getConnection().translateVaadinUri(
+                ApplicationConstants.APP_PROTOCOL_PREFIX
+                        + TooltipRegistryServerRpc.USAGE_BEACON_PATH);
+        if (sendBeacon(url, beacon.toJson())) {
+            usageShows = new HashMap<>();
+            usageDwellMs = new HashMap<>();
+        } else {
+            flushUsage();
+        }
+    }
+
+    private static JsonObject toJson(Map<String, Integer> counts) {
+        JsonObject json = Json.createObject();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            json.put(entry.getKey(), entry.getValue());
+        }
+        return json;
+    }
+
+    private static native boolean sendBeacon(String url, String data)
+    /*-{
+        if (!$wnd.navigator.sendBeacon) {
+            return false;
+        }
+        return $wnd.navigator.sendBeacon(url, data);
+    }-*/;
+
+    private native void requestIdle()
+    /*-{
+        var self = this;
+        var callback = $entry(function() {
+            self.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::prefetch()();
+        });
+        if ($wnd.requestIdleCallback) {
+            $wnd.requestIdleCallback(callback, {timeout: 1000});
+        } else {
+            $wnd.setTimeout(callback, 200);
+        }
+    }-*/;
+
+    /**
+     * Prefetches again when anything is scrolled, as tooltips may have moved
+     * into the viewport, and reports the collected usage with a beacon when
+     * the page is hidden or unloaded, so that it is not lost with the page
+     */
+    private native void addListeners()
+    /*-{
+        var self = this;
+        var scroll = $entry(function() {
+            self.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::schedulePrefetch()();
+        });
+        var unload = $entry(function() {
+            self.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::flushUsageOnUnload()();
+        });
+        $doc.addEventListener('scroll', scroll, true);
+        $wnd.addEventListener('pagehide', unload, false);
+        this.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::scrollListener = scroll;
+        this.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::unloadListener = unload;
+    }-*/;
+
+    /**
+     * Removes the listeners added by addListeners(), which would otherwise
+     * keep the unregistered connector alive
+     */
+    private native void removeListeners()
+    /*-{
+        var scroll = this.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::scrollListener;
+        var unload = this.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::unloadListener;
+        if (scroll) {
+            $doc.removeEventListener('scroll', scroll, true);
+        }
+        if (unload) {
+            $wnd.removeEventListener('pagehide', unload, false);
+        }
+        this.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::scrollListener = null;
+        this.@org.vaadin.addons.TooltipExtension.client.TooltipRegistryConnector::unloadListener = null;
+    }-*/;
+}
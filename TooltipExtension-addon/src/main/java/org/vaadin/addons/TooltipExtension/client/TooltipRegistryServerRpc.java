@@ -0,0 +1,47 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.shared.communication.ServerRpc;
+
+public interface TooltipRegistryServerRpc extends ServerRpc {
+
+    /**
+     * Path, relative to the service URL, that the usage collected when the
+     * page is unloaded is sent to with navigator.sendBeacon, as a JSON object
+     * with the UI id, the CSRF token and the arguments of
+     * {@link #reportTooltipUsage(Map, Map)} as "ui", "csrf", "shows" and
+     * "dwellMs"
+     */
+    String USAGE_BEACON_PATH = "APP/tooltip-usage";
+
+    /**
+     * Requests the texts of the lazily loaded tooltips with the given
+     * connector ids, answered in a single response
+     *
+     * @param connectorIds
+     *            List<String> connector ids of tooltip extensions
+     */
+    void requestTooltipTexts(List<String> connectorIds);
+
+    /**
+     * Releases the content components of content tooltips that have been
+     * hidden for the idle timeout, called as scheduled by
+     * {@link TooltipRegistryClientRpc#scheduleContentRelease(int)}
+     */
+    void releaseIdleContents();
+
+    /**
+     * Reports the sampled shows and dwell times of tooltips, by tooltip id,
+     * collected since the previous report
+     *
+     * @param shows
+     *            Map<String, Integer> number of shows by tooltip id
+     * @param dwellMs
+     *            Map<String, Integer> total visible time in milliseconds by
+     *            tooltip id
+     */
+    void reportTooltipUsage(Map<String, Integer> shows,
+            Map<String, Integer> dwellMs);
+}
@@ -0,0 +1,21 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vaadin.shared.communication.SharedState;
+
+public class TooltipRegistryState extends SharedState {
+    public Map<String, TooltipProfileState> profiles = new HashMap<>();
+    public Map<String, String> templates = new HashMap<>();
+    /**
+     * Fraction of tooltip shows that are counted and reported to the server,
+     * zero disables usage reporting.
+     */
+    public double usageSampleRate = 0;
+    /**
+     * Interval in milliseconds at which the counted usage is reported. Usage
+     * is also reported when the page is unloaded.
+     */
+    public int usageFlushIntervalMs = 30000;
+}
@@ -0,0 +1,16 @@
+package org.vaadin.addons.TooltipExtension.client;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client side copy of a tooltip spec, shared by all tooltips of a container
+ * using the same spec.
+ */
+public class TooltipSpecState implements Serializable {
+    public String text = "";
+    public String position = "RIGHT";
+    public List<String> styleNames = new ArrayList<>();
+    public int opacityTransDurationMs = 250;
+}
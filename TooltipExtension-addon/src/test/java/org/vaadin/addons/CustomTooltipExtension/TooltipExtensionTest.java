@@ -1,7 +1,19 @@
 package org.vaadin.addons.CustomTooltipExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import junit.framework.Assert;
 import org.junit.Test;
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder;
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder.TooltipPosition;
+import org.vaadin.addons.TooltipExtension.TooltipSpec;
+
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.VerticalLayout;
 
 // JUnit tests here
 public class TooltipExtensionTest {
@@ -10,4 +22,77 @@ public class TooltipExtensionTest {
 	public void thisAlwaysPasses() {
 		Assert.assertEquals(true, true);
 	}
+
+	@Test
+	public void builderDoesNotRetainRemovedComponents()
+			throws InterruptedException {
+		TooltipExtensionBuilder builder = new TooltipExtensionBuilder();
+		VerticalLayout layout = new VerticalLayout();
+		for (int cycle = 0; cycle < 50; cycle++) {
+			for (int i = 0; i < 100; i++) {
+				TextField field = new TextField();
+				layout.addComponent(field);
+				builder.createTooltip(field, "tooltip " + i);
+			}
+			layout.removeAllComponents();
+		}
+		for (int i = 0; i < 50 && builder.getSize() > 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		Assert.assertEquals(0, builder.getSize());
+	}
+
+	@Test
+	public void equalSpecsAreInterned() {
+		TooltipSpec spec = TooltipSpec.of("tooltip", TooltipPosition.TOP, 100,
+				200, "a", "b");
+		TooltipExtensionBuilder builder = new TooltipExtensionBuilder()
+				.setTooltipText("tooltip").setPosition(TooltipPosition.TOP)
+				.setPositionTransitionDuration(100)
+				.setOpacityTransitionDuration(200).addTooltipStyleName("a")
+				.addTooltipStyleName("b");
+		Assert.assertSame(spec, builder.toSpec());
+		Assert.assertNotSame(spec,
+				TooltipSpec.of("tooltip", TooltipPosition.TOP, 100, 200, "b",
+						"a"));
+	}
+
+	@Test
+	public void serializedSizePerTooltipIsBounded() throws Exception {
+		int count = 200;
+		VerticalLayout plain = new VerticalLayout();
+		VerticalLayout withTooltips = new VerticalLayout();
+		TooltipExtensionBuilder builder = new TooltipExtensionBuilder()
+				.setTooltipText("tooltip").addTooltipStyleName("style");
+		for (int i = 0; i < count; i++) {
+			plain.addComponent(new TextField());
+			TextField field = new TextField();
+			withTooltips.addComponent(field);
+			builder.createTooltip(field);
+		}
+		int plainSize = serialize(plain).length;
+		byte[] serialized = serialize(withTooltips, builder);
+		int perTooltip = (serialized.length - plainSize) / count;
+		Assert.assertTrue("Serialized size per tooltip " + perTooltip,
+				perTooltip < 1024);
+
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(serialized));
+		VerticalLayout restored = (VerticalLayout) in.readObject();
+		TooltipExtensionBuilder restoredBuilder = (TooltipExtensionBuilder) in
+				.readObject();
+		Assert.assertEquals(count, restored.getComponentCount());
+		Assert.assertEquals(count, restoredBuilder.getSize());
+	}
+
+	private static byte[] serialize(Object... objects) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		for (Object o : objects) {
+			out.writeObject(o);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
 }
@@ -0,0 +1,132 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+public class CachingTooltipTextResolverTest {
+
+	private static class CountingResolver implements TooltipTextResolver {
+		private final AtomicInteger resolved = new AtomicInteger();
+
+		@Override
+		public String resolveTooltipText(String key, Locale locale) {
+			resolved.incrementAndGet();
+			return key + "." + locale;
+		}
+	}
+
+	@Test
+	public void leastRecentlyUsedTextIsEvicted() {
+		CountingResolver resolver = new CountingResolver();
+		CachingTooltipTextResolver cache = new CachingTooltipTextResolver(
+				resolver, 2, 0);
+
+		Assert.assertEquals("a.en",
+				cache.resolveTooltipText("a", Locale.ENGLISH));
+		cache.resolveTooltipText("b", Locale.ENGLISH);
+		cache.resolveTooltipText("a", Locale.ENGLISH);
+		cache.resolveTooltipText("c", Locale.ENGLISH);
+		Assert.assertEquals(2, cache.getSize());
+		Assert.assertEquals(1, cache.getEvictionCount());
+
+		// b was used least recently, so it was evicted
+		cache.resolveTooltipText("a", Locale.ENGLISH);
+		cache.resolveTooltipText("c", Locale.ENGLISH);
+		Assert.assertEquals(3, resolver.resolved.get());
+		cache.resolveTooltipText("b", Locale.ENGLISH);
+		Assert.assertEquals(4, resolver.resolved.get());
+	}
+
+	@Test
+	public void expiredTextIsResolvedAgain() throws InterruptedException {
+		CountingResolver resolver = new CountingResolver();
+		CachingTooltipTextResolver cache = new CachingTooltipTextResolver(
+				resolver, 10, 50);
+
+		cache.resolveTooltipText("a", Locale.ENGLISH);
+		cache.resolveTooltipText("a", Locale.ENGLISH);
+		Assert.assertEquals(1, resolver.resolved.get());
+
+		Thread.sleep(100);
+		cache.resolveTooltipText("a", Locale.ENGLISH);
+		Assert.assertEquals(2, resolver.resolved.get());
+		Assert.assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	public void countersTrackHitsMissesAndEvictions() {
+		CachingTooltipTextResolver cache = new CachingTooltipTextResolver(
+				new CountingResolver(), 1, 0);
+
+		cache.resolveTooltipText("a", Locale.ENGLISH);
+		cache.resolveTooltipText("a", Locale.ENGLISH);
+		cache.resolveTooltipText("a", Locale.GERMAN);
+		cache.resolveTooltipText("a", Locale.ENGLISH);
+
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(3, cache.getMissCount());
+		Assert.assertEquals(2, cache.getEvictionCount());
+
+		cache.clear();
+		Assert.assertEquals(0, cache.getSize());
+		Assert.assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void concurrentMissesResolveOnce() throws InterruptedException {
+		final CountDownLatch resolving = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger resolved = new AtomicInteger();
+		final CachingTooltipTextResolver cache = new CachingTooltipTextResolver(
+				new TooltipTextResolver() {
+
+					@Override
+					public String resolveTooltipText(String key, Locale locale) {
+						resolved.incrementAndGet();
+						resolving.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return "text";
+					}
+				}, 10, 0);
+
+		final String[] results = new String[4];
+		Thread[] threads = new Thread[results.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					results[index] = cache.resolveTooltipText("a",
+							Locale.ENGLISH);
+				}
+			};
+		}
+		threads[0].start();
+		resolving.await();
+		for (int i = 1; i < threads.length; i++) {
+			threads[i].start();
+		}
+		// Gives the other threads time to find the text in flight
+		Thread.sleep(100);
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(1, resolved.get());
+		for (String result : results) {
+			Assert.assertEquals("text", result);
+		}
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(3, cache.getHitCount());
+	}
+}
@@ -0,0 +1,156 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder.TooltipPosition;
+import org.vaadin.addons.TooltipExtension.client.ContainerTooltipExtensionState;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.ClientMethodInvocation;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+
+public class ContainerTooltipExtensionTest {
+
+	private CssLayout layout;
+	private TextField first;
+	private TextField second;
+	private ContainerTooltipExtension tooltips;
+
+	@Before
+	public void setUp() {
+		first = new TextField();
+		second = new TextField();
+		layout = new CssLayout(first, second);
+		UI ui = new UI() {
+
+			@Override
+			protected void init(VaadinRequest request) {
+			}
+		};
+		ui.setContent(layout);
+		ui.setSession(new VaadinSession(null) {
+			private int connectorIds = 0;
+
+			@Override
+			public boolean hasLock() {
+				return true;
+			}
+
+			@Override
+			public String createConnectorId(ClientConnector connector) {
+				return String.valueOf(connectorIds++);
+			}
+		});
+		tooltips = ContainerTooltipExtension.get(layout);
+	}
+
+	private static TooltipSpec spec(String text) {
+		return TooltipSpec.of(text, TooltipPosition.RIGHT, 0, 0);
+	}
+
+	@Test
+	public void initialResponseWritesTheState() {
+		tooltips.setTooltip(first, spec("shared"));
+		tooltips.setTooltip(second, spec("shared"));
+		tooltips.beforeClientResponse(true);
+
+		ContainerTooltipExtensionState state = tooltips.getState(false);
+		Assert.assertEquals(1, state.tooltipsRevision);
+		Assert.assertEquals(1, state.specs.size());
+		Assert.assertEquals(2, state.tooltips.size());
+		Assert.assertTrue(tooltips.retrievePendingRpcCalls().isEmpty());
+	}
+
+	@Test
+	public void changedChildIsSentAlone() {
+		tooltips.setTooltip(first, spec("shared"));
+		tooltips.setTooltip(second, spec("shared"));
+		tooltips.beforeClientResponse(true);
+
+		tooltips.setTooltip(second, spec("own"));
+		tooltips.beforeClientResponse(false);
+
+		List<ClientMethodInvocation> calls = tooltips
+				.retrievePendingRpcCalls();
+		Assert.assertEquals(2, calls.size());
+		Assert.assertEquals("addSpecs", calls.get(0).getMethodName());
+		Assert.assertEquals(1, calls.get(0).getParameters()[0]);
+		Assert.assertEquals(1,
+				((List<?>) calls.get(0).getParameters()[1]).size());
+		Assert.assertEquals("updateTooltips", calls.get(1).getMethodName());
+		Assert.assertEquals(
+				Collections.singletonMap(second.getConnectorId(), 1),
+				calls.get(1).getParameters()[0]);
+		// The state is not resent
+		Assert.assertEquals(1, tooltips.getState(false).tooltipsRevision);
+	}
+
+	@Test
+	public void removedChildIsSentAsMinusOne() {
+		tooltips.setTooltip(first, spec("shared"));
+		tooltips.setTooltip(second, spec("shared"));
+		tooltips.beforeClientResponse(true);
+		String connectorId = first.getConnectorId();
+
+		layout.removeComponent(first);
+		tooltips.beforeClientResponse(false);
+
+		List<ClientMethodInvocation> calls = tooltips
+				.retrievePendingRpcCalls();
+		Assert.assertEquals(1, calls.size());
+		Assert.assertEquals("updateTooltips", calls.get(0).getMethodName());
+		Assert.assertEquals(Collections.singletonMap(connectorId, -1),
+				calls.get(0).getParameters()[0]);
+		Assert.assertNull(tooltips.getTooltip(first));
+	}
+
+	@Test
+	public void unchangedTooltipIsNotSent() {
+		tooltips.setTooltip(first, spec("first"));
+		tooltips.beforeClientResponse(true);
+
+		tooltips.setTooltip(first, spec("other"));
+		tooltips.setTooltip(first, spec("first"));
+		tooltips.beforeClientResponse(false);
+
+		Assert.assertTrue(tooltips.retrievePendingRpcCalls().isEmpty());
+	}
+
+	@Test
+	public void unusedSpecsRewriteTheState() {
+		tooltips.setTooltip(first, spec("text"));
+		tooltips.beforeClientResponse(true);
+
+		int responses = 0;
+		List<ClientMethodInvocation> calls;
+		do {
+			responses++;
+			tooltips.setTooltip(first, spec("text " + responses));
+			tooltips.beforeClientResponse(false);
+			calls = tooltips.retrievePendingRpcCalls();
+			Assert.assertTrue("The state was never rewritten",
+					responses < 100);
+		} while (tooltips.getState(false).tooltipsRevision == 1);
+
+		// Rewritten once the client has more specs than twice its tooltips
+		// plus MAX_UNUSED_SPECS, each response adding one
+		Assert.assertEquals(ContainerTooltipExtension.MAX_UNUSED_SPECS + 2,
+				responses);
+		Assert.assertTrue(calls.isEmpty());
+		ContainerTooltipExtensionState state = tooltips.getState(false);
+		Assert.assertEquals(2, state.tooltipsRevision);
+		Assert.assertEquals(1, state.specs.size());
+		Map<String, Integer> expected = Collections
+				.singletonMap(first.getConnectorId(), 0);
+		Assert.assertEquals(expected, state.tooltips);
+	}
+}
@@ -0,0 +1,166 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+
+public class TooltipExtensionTest {
+
+	/**
+	 * Runs the queued tasks when asked to, standing in for a thread pool
+	 */
+	private static class QueueExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		void runAll() {
+			List<Runnable> queued = new ArrayList<Runnable>(tasks);
+			tasks.clear();
+			for (Runnable task : queued) {
+				task.run();
+			}
+		}
+	}
+
+	private static class CountingProvider implements TooltipTextProvider {
+		private final String text;
+		private int calls = 0;
+
+		CountingProvider(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public String getTooltipText(AbstractComponent component) {
+			calls++;
+			return text;
+		}
+	}
+
+	private UI ui;
+	private TextField field;
+	private QueueExecutor executor;
+
+	@Before
+	public void setUp() {
+		field = new TextField();
+		ui = new UI() {
+
+			@Override
+			protected void init(VaadinRequest request) {
+			}
+		};
+		ui.setContent(field);
+		// Runs access tasks at once, as if the lock was free
+		ui.setSession(new VaadinSession(null) {
+			private int connectorIds = 0;
+
+			@Override
+			public boolean hasLock() {
+				return true;
+			}
+
+			@Override
+			public void lock() {
+			}
+
+			@Override
+			public void unlock() {
+			}
+
+			@Override
+			public Future<Void> access(Runnable runnable) {
+				runnable.run();
+				return null;
+			}
+
+			@Override
+			public String createConnectorId(ClientConnector connector) {
+				return String.valueOf(connectorIds++);
+			}
+		});
+		executor = new QueueExecutor();
+	}
+
+	private TooltipExtension createAsyncTooltip(TooltipTextProvider provider) {
+		new TooltipExtensionBuilder().setExecutor(executor)
+				.setPlaceholderText("Loading")
+				.createAsyncTooltip(field, provider);
+		return TooltipExtension.get(field);
+	}
+
+	@Test
+	public void asyncTextReplacesThePlaceholder() {
+		CountingProvider provider = new CountingProvider("text");
+		TooltipExtension te = createAsyncTooltip(provider);
+		Assert.assertEquals("Loading", te.getTooltipText());
+		Assert.assertTrue(te.getState(false).textPending);
+		Assert.assertEquals(0, provider.calls);
+
+		executor.runAll();
+		Assert.assertEquals(1, provider.calls);
+		Assert.assertEquals("text", te.getTooltipText());
+		Assert.assertFalse(te.getState(false).textPending);
+	}
+
+	@Test
+	public void staleAsyncTextIsDropped() {
+		TooltipExtension te = createAsyncTooltip(new CountingProvider("old"));
+		te.setTooltipText("set meanwhile");
+
+		executor.runAll();
+		Assert.assertEquals("set meanwhile", te.getTooltipText());
+	}
+
+	@Test
+	public void onlyTheLatestAsyncTextIsApplied() {
+		TooltipExtension te = createAsyncTooltip(new CountingProvider("old"));
+		createAsyncTooltip(new CountingProvider("new"));
+
+		executor.runAll();
+		Assert.assertEquals("new", te.getTooltipText());
+	}
+
+	@Test
+	public void detachedUIIsNotUpdated() {
+		TooltipExtension te = createAsyncTooltip(new CountingProvider("text"));
+		ui.setSession(null);
+
+		// UIDetachedException is handled by the load
+		executor.runAll();
+		Assert.assertEquals("Loading", te.getTooltipText());
+	}
+
+	@Test
+	public void missingExecutorKeepsTheTextPending() {
+		// As after the session has been restored, the executor is gone
+		CountingProvider provider = new CountingProvider("text");
+		new TooltipExtensionBuilder().createTooltip(field, "");
+		TooltipExtension te = TooltipExtension.get(field);
+		te.setAsyncTextProvider(provider, null, "Loading");
+		Assert.assertEquals(0, provider.calls);
+		Assert.assertEquals("Loading", te.getTooltipText());
+		Assert.assertTrue(te.getState(false).textPending);
+
+		te.setAsyncExecutor(executor);
+		executor.runAll();
+		Assert.assertEquals(1, provider.calls);
+		Assert.assertEquals("text", te.getTooltipText());
+	}
+}
@@ -0,0 +1,166 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import com.vaadin.server.ClientMethodInvocation;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+
+public class TooltipRegistryTest {
+
+	private static class CountingFactory implements TooltipContentFactory {
+		private int created = 0;
+
+		@Override
+		public Component createContent(AbstractComponent component) {
+			created++;
+			return new Label("content");
+		}
+	}
+
+	private static UI createUI() {
+		return new UI() {
+
+			@Override
+			protected void init(VaadinRequest request) {
+			}
+		};
+	}
+
+	private static TooltipExtension createContentTooltip(
+			TooltipContentFactory factory) {
+		TextField field = new TextField();
+		new TooltipExtensionBuilder().createContentTooltip(field, factory);
+		return TooltipExtension.get(field);
+	}
+
+	@Test
+	public void idleContentIsReleased() throws InterruptedException {
+		TooltipRegistry registry = TooltipRegistry.get(createUI());
+		registry.setContentIdleTimeout(50);
+		CountingFactory factory = new CountingFactory();
+		TooltipExtension te = createContentTooltip(factory);
+
+		registry.showContent(te, factory, 0, 0);
+		registry.hideContent(te);
+		Assert.assertEquals(1, registry.getLiveContentCount());
+
+		Thread.sleep(100);
+		registry.releaseIdleContents();
+		Assert.assertEquals(0, registry.getLiveContentCount());
+
+		registry.showContent(te, factory, 0, 0);
+		Assert.assertEquals(2, factory.created);
+	}
+
+	@Test
+	public void leastRecentlyShownContentIsReleased() {
+		TooltipRegistry registry = TooltipRegistry.get(createUI());
+		registry.setMaxLiveContents(2);
+		CountingFactory first = new CountingFactory();
+		CountingFactory second = new CountingFactory();
+		CountingFactory third = new CountingFactory();
+		TooltipExtension te1 = createContentTooltip(first);
+		TooltipExtension te2 = createContentTooltip(second);
+		TooltipExtension te3 = createContentTooltip(third);
+
+		registry.showContent(te1, first, 0, 0);
+		registry.showContent(te2, second, 0, 0);
+		registry.showContent(te1, first, 0, 0);
+		registry.showContent(te3, third, 0, 0);
+		Assert.assertEquals(2, registry.getLiveContentCount());
+
+		// te2 was shown least recently, so it was released
+		registry.showContent(te1, first, 0, 0);
+		registry.showContent(te2, second, 0, 0);
+		Assert.assertEquals(1, first.created);
+		Assert.assertEquals(2, second.created);
+		Assert.assertEquals(1, third.created);
+	}
+
+	@Test
+	public void newStringsAreSentInOneCallPerResponse() {
+		TooltipRegistry registry = TooltipRegistry.get(createUI());
+		Assert.assertEquals(0, registry.getStringRef("first"));
+		Assert.assertEquals(1, registry.getStringRef("second"));
+		Assert.assertEquals(0, registry.getStringRef("first"));
+
+		List<ClientMethodInvocation> calls = registry
+				.retrievePendingRpcCalls();
+		Assert.assertEquals(1, calls.size());
+		Assert.assertEquals(0, calls.get(0).getParameters()[0]);
+		Assert.assertEquals(Arrays.asList("first", "second"),
+				calls.get(0).getParameters()[1]);
+
+		Assert.assertEquals(2, registry.getStringRef("third"));
+		calls = registry.retrievePendingRpcCalls();
+		Assert.assertEquals(1, calls.size());
+		Assert.assertEquals(2, calls.get(0).getParameters()[0]);
+	}
+
+	@Test
+	public void resetStringTableStartsAtIndexZero() {
+		TooltipRegistry registry = TooltipRegistry.get(createUI());
+		registry.getStringRef("first");
+		registry.getStringRef("second");
+		registry.retrievePendingRpcCalls();
+
+		registry.resetStrings();
+		Assert.assertEquals(0, registry.getStringRef("second"));
+		List<ClientMethodInvocation> calls = registry
+				.retrievePendingRpcCalls();
+		Assert.assertEquals(1, calls.size());
+		Assert.assertEquals(0, calls.get(0).getParameters()[0]);
+		Assert.assertEquals(Arrays.asList("second"),
+				calls.get(0).getParameters()[1]);
+	}
+
+	@Test
+	public void firstResponseSendsTheTableOnce() {
+		UI ui = createUI();
+		TextField field = new TextField();
+		ui.setContent(field);
+		new TooltipExtensionBuilder().createTooltip(field, "text");
+
+		// The registry is created while the first tooltip is written
+		TooltipExtension.get(field).beforeClientResponse(true);
+		TooltipRegistry registry = TooltipRegistry.get(ui);
+		registry.beforeClientResponse(true);
+
+		List<ClientMethodInvocation> calls = registry
+				.retrievePendingRpcCalls();
+		Assert.assertEquals(1, calls.size());
+		Assert.assertEquals(0, calls.get(0).getParameters()[0]);
+		Assert.assertTrue(((List<?>) calls.get(0).getParameters()[1])
+				.contains("text"));
+	}
+
+	@Test
+	public void refreshSendsTheWholeTableOnce() {
+		TooltipRegistry registry = TooltipRegistry.get(createUI());
+		registry.getStringRef("first");
+		registry.retrievePendingRpcCalls();
+
+		registry.getStringRef("second");
+		registry.beforeClientResponse(true);
+
+		List<ClientMethodInvocation> calls = registry
+				.retrievePendingRpcCalls();
+		Assert.assertEquals(2, calls.size());
+		// The call queued before the refresh no longer carries any string
+		Assert.assertEquals(1, calls.get(0).getParameters()[0]);
+		Assert.assertEquals(0,
+				((List<?>) calls.get(0).getParameters()[1]).size());
+		Assert.assertEquals(0, calls.get(1).getParameters()[0]);
+		Assert.assertEquals(Arrays.asList("first", "second"),
+				calls.get(1).getParameters()[1]);
+	}
+}
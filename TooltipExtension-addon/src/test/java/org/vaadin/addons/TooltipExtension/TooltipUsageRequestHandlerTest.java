@@ -0,0 +1,185 @@
+package org.vaadin.addons.TooltipExtension;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.addons.TooltipExtension.client.TooltipRegistryServerRpc;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.RequestHandler;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+
+public class TooltipUsageRequestHandlerTest {
+
+	private static final String CSRF = "csrf-token";
+
+	private VaadinSession session;
+	private TooltipRegistry registry;
+	private RequestHandler handler;
+
+	@Before
+	public void setUp() {
+		final UI ui = new UI() {
+
+			@Override
+			protected void init(VaadinRequest request) {
+			}
+		};
+		session = new VaadinSession(null) {
+			private int connectorIds = 0;
+
+			@Override
+			public boolean hasLock() {
+				return true;
+			}
+
+			@Override
+			public void lock() {
+			}
+
+			@Override
+			public void unlock() {
+			}
+
+			@Override
+			public String getCsrfToken() {
+				return CSRF;
+			}
+
+			@Override
+			public UI getUIById(int uiId) {
+				return uiId == 1 ? ui : null;
+			}
+
+			@Override
+			public String createConnectorId(ClientConnector connector) {
+				return String.valueOf(connectorIds++);
+			}
+		};
+		ui.setSession(session);
+		// Registers the handler when attached
+		registry = TooltipRegistry.get(ui);
+		for (RequestHandler h : session.getRequestHandlers()) {
+			if (h instanceof TooltipUsageRequestHandler) {
+				handler = h;
+			}
+		}
+	}
+
+	/**
+	 * Posts the body to the handler and returns the status of the response,
+	 * or -1 if the handler did not handle the request
+	 */
+	private int post(final String path, final String body) throws IOException {
+		VaadinRequest request = (VaadinRequest) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class<?>[] { VaadinRequest.class }, new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						if ("getPathInfo".equals(method.getName())) {
+							return path;
+						} else if ("getReader".equals(method.getName())) {
+							return new BufferedReader(new StringReader(body));
+						}
+						return null;
+					}
+				});
+		final int[] status = { 0 };
+		VaadinResponse response = (VaadinResponse) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class<?>[] { VaadinResponse.class },
+				new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						if ("sendError".equals(method.getName())
+								|| "setStatus".equals(method.getName())) {
+							status[0] = (Integer) args[0];
+						}
+						return null;
+					}
+				});
+		if (!handler.handleRequest(session, request, response)) {
+			return -1;
+		}
+		return status[0];
+	}
+
+	private int postUsage(String body) throws IOException {
+		return post("/" + TooltipRegistryServerRpc.USAGE_BEACON_PATH, body);
+	}
+
+	@Test
+	public void handlerIsRegisteredOnce() {
+		TooltipUsageRequestHandler.register(session);
+		int count = 0;
+		for (RequestHandler h : session.getRequestHandlers()) {
+			if (h instanceof TooltipUsageRequestHandler) {
+				count++;
+			}
+		}
+		Assert.assertEquals(1, count);
+	}
+
+	@Test
+	public void usageIsCounted() throws IOException {
+		Assert.assertEquals(204, postUsage("{\"ui\":1,\"csrf\":\"" + CSRF
+				+ "\",\"shows\":{\"help\":2},\"dwellMs\":{\"help\":300}}"));
+		Assert.assertEquals(204, postUsage("{\"ui\":1,\"csrf\":\"" + CSRF
+				+ "\",\"shows\":{\"help\":1},\"dwellMs\":{\"help\":100}}"));
+
+		TooltipUsage usage = registry.getUsage("help");
+		Assert.assertEquals(3, usage.getShowCount());
+		Assert.assertEquals(400, usage.getDwellTimeMs());
+	}
+
+	@Test
+	public void wrongCsrfTokenIsRejected() throws IOException {
+		Assert.assertEquals(403, postUsage(
+				"{\"ui\":1,\"csrf\":\"wrong\",\"shows\":{\"help\":2}}"));
+		Assert.assertEquals(403, postUsage("{\"ui\":1,\"shows\":{\"help\":2}}"));
+		Assert.assertEquals(403, postUsage(
+				"{\"ui\":1,\"csrf\":1,\"shows\":{\"help\":2}}"));
+		Assert.assertNull(registry.getUsage("help"));
+	}
+
+	@Test
+	public void unknownUIIsIgnored() throws IOException {
+		Assert.assertEquals(204, postUsage("{\"ui\":2,\"csrf\":\"" + CSRF
+				+ "\",\"shows\":{\"help\":2}}"));
+		Assert.assertEquals(204, postUsage("{\"ui\":\"1\",\"csrf\":\"" + CSRF
+				+ "\",\"shows\":{\"help\":2}}"));
+		Assert.assertNull(registry.getUsage("help"));
+	}
+
+	@Test
+	public void malformedOrOversizedBodyIsRejected() throws IOException {
+		Assert.assertEquals(400, postUsage("not json"));
+		Assert.assertEquals(400, postUsage("[1]"));
+
+		char[] padding = new char[70000];
+		Arrays.fill(padding, ' ');
+		Assert.assertEquals(400, postUsage("{\"ui\":1,\"csrf\":\"" + CSRF
+				+ "\",\"shows\":{\"help\":2}" + new String(padding) + "}"));
+		Assert.assertNull(registry.getUsage("help"));
+	}
+
+	@Test
+	public void otherPathsAreNotHandled() throws IOException {
+		Assert.assertEquals(-1, post("/APP/other", "{}"));
+	}
+}
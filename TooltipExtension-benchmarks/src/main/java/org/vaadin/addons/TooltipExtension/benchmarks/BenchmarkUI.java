@@ -0,0 +1,43 @@
+package org.vaadin.addons.TooltipExtension.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+
+/**
+ * UI without a session used as the root of the benchmarked component trees,
+ * so that state changes mark connectors dirty like in a running application
+ */
+public class BenchmarkUI extends UI {
+
+    private final CssLayout layout = new CssLayout();
+
+    public BenchmarkUI() {
+        setContent(layout);
+    }
+
+    @Override
+    protected void init(VaadinRequest request) {
+    }
+
+    /**
+     * Adds count new text fields to the UI
+     *
+     * @param count
+     *            int number of fields
+     * @return List<TextField> the added fields
+     */
+    public List<TextField> addFields(int count) {
+        List<TextField> fields = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TextField field = new TextField();
+            layout.addComponent(field);
+            fields.add(field);
+        }
+        return fields;
+    }
+}
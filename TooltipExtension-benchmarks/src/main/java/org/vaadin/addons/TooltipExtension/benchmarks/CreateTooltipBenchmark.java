@@ -0,0 +1,102 @@
+package org.vaadin.addons.TooltipExtension.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.vaadin.addons.TooltipExtension.TooltipBatchResult;
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder;
+import org.vaadin.addons.TooltipExtension.TooltipTextProvider;
+
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.TextField;
+
+/**
+ * Cost of building tooltips for count components, one call per component
+ * compared to the batch API. The create benchmarks include creating the
+ * components, see {@link #createComponentsOnly()} for that baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CreateTooltipBenchmark {
+
+    private static final TooltipTextProvider TEXT = new TooltipTextProvider() {
+
+        @Override
+        public String getTooltipText(AbstractComponent component) {
+            return "tooltip";
+        }
+    };
+
+    @Param({ "10", "100", "1000" })
+    public int count;
+
+    private TooltipExtensionBuilder builder;
+    private List<TextField> extendedFields;
+
+    @Setup
+    public void setup() {
+        builder = new TooltipExtensionBuilder().addTooltipStyleName("style");
+        extendedFields = new BenchmarkUI().addFields(count);
+        builder.createTooltips(extendedFields, TEXT);
+    }
+
+    private List<TextField> newFields() {
+        List<TextField> fields = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            fields.add(new TextField());
+        }
+        return fields;
+    }
+
+    @Benchmark
+    public List<TextField> createComponentsOnly() {
+        return newFields();
+    }
+
+    @Benchmark
+    public List<TextField> createTooltip() {
+        List<TextField> fields = newFields();
+        for (TextField field : fields) {
+            builder.createTooltip(field, TEXT.getTooltipText(field));
+        }
+        return fields;
+    }
+
+    @Benchmark
+    public List<TextField> createTooltipWithId() {
+        List<TextField> fields = newFields();
+        for (TextField field : fields) {
+            builder.createTooltipWithId(field, "id",
+                    TEXT.getTooltipText(field));
+        }
+        return fields;
+    }
+
+    @Benchmark
+    public TooltipBatchResult createTooltipsBatch() {
+        return builder.createTooltips(newFields(), TEXT);
+    }
+
+    @Benchmark
+    public List<TextField> updateTooltip() {
+        for (TextField field : extendedFields) {
+            builder.createTooltip(field, TEXT.getTooltipText(field));
+        }
+        return extendedFields;
+    }
+
+    @Benchmark
+    public TooltipBatchResult updateTooltipsBatch() {
+        return builder.createTooltips(extendedFields, TEXT);
+    }
+}
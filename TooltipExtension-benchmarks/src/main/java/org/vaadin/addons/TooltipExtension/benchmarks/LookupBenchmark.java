@@ -0,0 +1,102 @@
+package org.vaadin.addons.TooltipExtension.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vaadin.addons.TooltipExtension.TooltipExtension;
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder;
+
+import com.vaadin.server.AbstractExtension;
+import com.vaadin.server.Extension;
+import com.vaadin.ui.TextField;
+
+/**
+ * Cost of reading tooltip properties of count components. Each component
+ * also has a few unrelated extensions, as components in real applications
+ * often do. {@link #scanExtensions(Blackhole)} is the plain scan of the
+ * extensions, which {@link #get(Blackhole)} should not be slower than. The
+ * benchmarks run in several threads, each with a UI of its own like sessions
+ * of a server, so that any lock shared by lookups shows up as contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(4)
+public class LookupBenchmark {
+
+    private static class OtherExtension extends AbstractExtension {
+
+        OtherExtension(TextField field) {
+            extend(field);
+        }
+    }
+
+    @Param({ "10", "100", "1000" })
+    public int count;
+
+    private TooltipExtensionBuilder builder;
+    private List<TextField> fields;
+
+    @Setup
+    public void setup() {
+        fields = new BenchmarkUI().addFields(count);
+        for (TextField field : fields) {
+            new OtherExtension(field);
+            new OtherExtension(field);
+        }
+        builder = new TooltipExtensionBuilder();
+        builder.createTooltips(fields, null);
+        for (TextField field : fields) {
+            new OtherExtension(field);
+        }
+    }
+
+    @Benchmark
+    public void scanExtensions(Blackhole bh) {
+        for (TextField field : fields) {
+            for (Extension e : field.getExtensions()) {
+                if (e instanceof TooltipExtension) {
+                    bh.consume(e);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void get(Blackhole bh) {
+        for (TextField field : fields) {
+            bh.consume(TooltipExtension.get(field));
+        }
+    }
+
+    @Benchmark
+    public void getTooltipTextFor(Blackhole bh) {
+        for (TextField field : fields) {
+            bh.consume(builder.getTooltipTextFor(field));
+        }
+    }
+
+    @Benchmark
+    public void getTooltipPositionFor(Blackhole bh) {
+        for (TextField field : fields) {
+            bh.consume(builder.getTooltipPositionFor(field));
+        }
+    }
+
+    @Benchmark
+    public void getOpacityTransitionFor(Blackhole bh) {
+        for (TextField field : fields) {
+            bh.consume(builder.getOpacityTransitionFor(field));
+        }
+    }
+}
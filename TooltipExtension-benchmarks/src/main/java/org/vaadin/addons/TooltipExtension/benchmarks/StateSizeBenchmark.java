@@ -0,0 +1,105 @@
+package org.vaadin.addons.TooltipExtension.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.vaadin.addons.TooltipExtension.TooltipExtension;
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder;
+import org.vaadin.addons.TooltipExtension.TooltipRegistry;
+import org.vaadin.addons.TooltipExtension.TooltipTextProvider;
+
+import com.vaadin.server.ClientMethodInvocation;
+import com.vaadin.server.ConnectorTracker;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.TextField;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+
+/**
+ * Size of the initial state of count tooltips in the response, encoded
+ * through {@link TooltipExtension#encodeState()} as the framework does, so
+ * that texts and style names sent through the string table of the
+ * {@link TooltipRegistry} are counted as indexes. The benchmark measures
+ * encoding time, the sizes are reported as the secondary results
+ * stateChars and stringTableChars.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class StateSizeBenchmark {
+
+    /**
+     * Characters of the encoded states and of the string table sent with
+     * them in one response
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireSize {
+        public int stateChars;
+        public int stringTableChars;
+    }
+
+    @Param({ "10", "100", "1000" })
+    public int count;
+
+    private ConnectorTracker tracker;
+    private List<TooltipExtension> extensions;
+    private int stringTableChars;
+
+    @Setup
+    public void setup() {
+        BenchmarkUI ui = new BenchmarkUI();
+        List<TextField> fields = ui.addFields(count);
+        new TooltipExtensionBuilder().addTooltipStyleName("style")
+                .createTooltips(fields, new TooltipTextProvider() {
+
+                    @Override
+                    public String getTooltipText(AbstractComponent component) {
+                        return "Tooltip of field " + component.hashCode();
+                    }
+                });
+
+        tracker = ui.getConnectorTracker();
+        extensions = new ArrayList<>(count);
+        for (TextField field : fields) {
+            TooltipExtension te = TooltipExtension.get(field);
+            // Adds the text and style names to the string table
+            te.beforeClientResponse(true);
+            extensions.add(te);
+        }
+        JsonArray strings = Json.createArray();
+        for (ClientMethodInvocation call : TooltipRegistry.get(ui)
+                .retrievePendingRpcCalls()) {
+            if ("setStrings".equals(call.getMethodName())) {
+                for (Object value : (List<?>) call.getParameters()[1]) {
+                    strings.set(strings.length(), (String) value);
+                }
+            }
+        }
+        stringTableChars = strings.toJson().length();
+    }
+
+    @Benchmark
+    public int encodeStates(WireSize size) {
+        int chars = 0;
+        for (TooltipExtension te : extensions) {
+            // Encode against the default state, as in an initial response
+            tracker.setDiffState(te, null);
+            chars += te.encodeState().toJson().length();
+        }
+        size.stateChars = chars;
+        size.stringTableChars = stringTableChars;
+        return chars;
+    }
+}
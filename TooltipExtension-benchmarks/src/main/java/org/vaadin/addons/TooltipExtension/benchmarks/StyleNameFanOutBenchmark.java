@@ -0,0 +1,73 @@
+package org.vaadin.addons.TooltipExtension.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.vaadin.addons.TooltipExtension.TooltipExtensionBuilder;
+import org.vaadin.addons.TooltipExtension.TooltipProfile;
+import org.vaadin.addons.TooltipExtension.TooltipRegistry;
+
+import com.vaadin.ui.UI;
+
+/**
+ * Cost of changing the style names of count tooltips through the Builder,
+ * which updates every extension, compared to changing a shared profile. Each
+ * operation adds and removes a style name and returns the number of
+ * connectors it marked dirty.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class StyleNameFanOutBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int count;
+
+    private BenchmarkUI builderUI;
+    private TooltipExtensionBuilder builder;
+    private BenchmarkUI profileUI;
+    private TooltipProfile profile;
+
+    @Setup
+    public void setup() {
+        builderUI = new BenchmarkUI();
+        builder = new TooltipExtensionBuilder();
+        builder.createTooltips(builderUI.addFields(count),
+                null);
+        builderUI.getConnectorTracker().markAllConnectorsClean();
+
+        profileUI = new BenchmarkUI();
+        profile = TooltipRegistry.get(profileUI).getProfile("fanout");
+        new TooltipExtensionBuilder().setProfile(profile.getName())
+                .createTooltips(profileUI.addFields(count),
+                        null);
+        profileUI.getConnectorTracker().markAllConnectorsClean();
+    }
+
+    @Benchmark
+    public int builderStyleName() {
+        builder.addTooltipStyleName("highlight");
+        builder.removeTooltipStyleName("highlight");
+        return markClean(builderUI);
+    }
+
+    @Benchmark
+    public int profileStyleName() {
+        profile.addStyleName("highlight");
+        profile.removeStyleName("highlight");
+        return markClean(profileUI);
+    }
+
+    private static int markClean(UI ui) {
+        int dirty = ui.getConnectorTracker().getDirtyConnectors().size();
+        ui.getConnectorTracker().markAllConnectorsClean();
+        return dirty;
+    }
+}
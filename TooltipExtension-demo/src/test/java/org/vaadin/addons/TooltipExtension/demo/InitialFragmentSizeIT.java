@@ -0,0 +1,108 @@
+package org.vaadin.addons.TooltipExtension.demo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks the GWT compile report of the demo widgetset. The connectors of the
+ * add-on are loaded lazily, so the add-on should add next to nothing to the
+ * initial fragment every application downloads.
+ */
+public class InitialFragmentSizeIT {
+
+	private static final String ADDON_PACKAGE = "org.vaadin.addons.TooltipExtension.";
+
+	@Test
+	public void addonInitialFragmentSizeIsBounded() throws Exception {
+		File reportDir = new File(System.getProperty("compileReport.dir",
+				"target/extra"));
+		int maxBytes = Integer.parseInt(System.getProperty(
+				"tooltip.maxInitialFragmentBytes", "4096"));
+
+		List<File> stories = new ArrayList<File>();
+		findStories(reportDir, stories);
+		Assert.assertFalse("No compile report found in " + reportDir,
+				stories.isEmpty());
+
+		for (File file : stories) {
+			int size = getInitialFragmentSize(file);
+			Assert.assertTrue("The add-on adds " + size
+					+ " bytes to the initial fragment in " + file
+					+ ", more than " + maxBytes, size <= maxBytes);
+		}
+	}
+
+	private static void findStories(File dir, List<File> stories) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				findStories(file, stories);
+			} else if (file.getName().matches("stories\\d+\\.xml\\.gz")) {
+				stories.add(file);
+			}
+		}
+	}
+
+	/**
+	 * Sums the sizes of the classes, methods and fields of the add-on in the
+	 * size map of fragment 0 of one permutation
+	 */
+	private static int getInitialFragmentSize(File file) throws Exception {
+		final int[] size = new int[1];
+		DefaultHandler handler = new DefaultHandler() {
+			private boolean initialFragment = false;
+
+			@Override
+			public void startElement(String uri, String localName,
+					String qName, Attributes attributes) {
+				if ("sizemap".equals(qName)) {
+					initialFragment = "0".equals(attributes
+							.getValue("fragment"));
+				} else if (initialFragment && "size".equals(qName)) {
+					String ref = attributes.getValue("ref");
+					if (ref != null && ref.startsWith(ADDON_PACKAGE)) {
+						size[0] += Integer.parseInt(attributes
+								.getValue("size"));
+					}
+				}
+			}
+
+			@Override
+			public void endElement(String uri, String localName, String qName) {
+				if ("sizemap".equals(qName)) {
+					initialFragment = false;
+				}
+			}
+		};
+		InputStream in = new GZIPInputStream(new FileInputStream(file));
+		try {
+			SAXParserFactory.newInstance().newSAXParser().parse(in, handler);
+		} finally {
+			closeQuietly(in);
+		}
+		return size[0];
+	}
+
+	private static void closeQuietly(InputStream in) {
+		try {
+			in.close();
+		} catch (IOException e) {
+			// ignored
+		}
+	}
+}